@@ -0,0 +1,236 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the API calls of the shared OpenShift client by verb, resource and
+ * namespace: their latency up to the response headers, errors, and bytes
+ * sent and received. The counts of each verb, resource and namespace are
+ * registered as an MXBean named
+ * {@code io.fabric8.jenkins.openshiftsync:type=ApiCalls,verb=..,resource=..,namespace=..}
+ * the first time such a call is made. Since the resource includes the
+ * subresource, e.g. {@code buildconfigs/instantiate}, relists, status updates
+ * and triggers can be told apart.
+ */
+public class ApiMetrics implements Interceptor {
+    private static final ApiMetrics INSTANCE = new ApiMetrics();
+
+    private static final ConcurrentHashMap<String, CallStats> stats = new ConcurrentHashMap<String, CallStats>();
+
+    /**
+     * The interceptor shared by all clients the plugin creates, so the counts
+     * survive a reconfiguration
+     */
+    public static ApiMetrics get() {
+        return INSTANCE;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        CallStats call = statsFor(classify(request.method(), request.url()));
+        if (request.body() != null && request.body().contentLength() > 0) {
+            call.bytesSent.addAndGet(request.body().contentLength());
+        }
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            call.latency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            call.errors.incrementAndGet();
+            throw e;
+        }
+        call.latency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        if (response.code() >= 400) {
+            call.errors.incrementAndGet();
+        }
+        if (response.body() == null || response.code() == 101) {
+            // a web socket upgrade, whose frames are not ours to count
+            return response;
+        }
+        return response.newBuilder().body(countingBody(response.body(), call.bytesReceived)).build();
+    }
+
+    private static ResponseBody countingBody(final ResponseBody body, final AtomicLong received) {
+        ForwardingSource counting = new ForwardingSource(body.source()) {
+            @Override
+            public long read(Buffer sink, long byteCount) throws IOException {
+                long read = super.read(sink, byteCount);
+                if (read > 0) {
+                    received.addAndGet(read);
+                }
+                return read;
+            }
+        };
+        return ResponseBody.create(body.contentType(), body.contentLength(), Okio.buffer(counting));
+    }
+
+    /**
+     * The verb, resource and namespace of a call, the verb named as in
+     * Kubernetes RBAC rules
+     */
+    static String[] classify(String method, HttpUrl url) {
+        List<String> segments = url.pathSegments();
+        int i = 0;
+        if (segments.size() > 0 && ("api".equals(segments.get(0)) || "oapi".equals(segments.get(0)))) {
+            i = 2;
+        } else if (segments.size() > 0 && "apis".equals(segments.get(0))) {
+            i = 3;
+        }
+        boolean watch = "true".equals(url.queryParameter("watch"));
+        if (i < segments.size() && "watch".equals(segments.get(i))) {
+            watch = true;
+            i++;
+        }
+        String namespace = "-";
+        if (i + 2 < segments.size() && "namespaces".equals(segments.get(i))) {
+            namespace = segments.get(i + 1);
+            i += 2;
+        }
+        String resource = i < segments.size() && segments.get(i).length() > 0 ? segments.get(i) : "other";
+        boolean named = i + 1 < segments.size() && segments.get(i + 1).length() > 0;
+        if (i + 2 < segments.size() && segments.get(i + 2).length() > 0) {
+            resource = resource + "/" + segments.get(i + 2);
+        }
+        return new String[] { verb(method, watch, named), resource, namespace };
+    }
+
+    private static String verb(String method, boolean watch, boolean named) {
+        if ("GET".equals(method)) {
+            return watch ? "watch" : named ? "get" : "list";
+        }
+        if ("POST".equals(method)) {
+            return "create";
+        }
+        if ("PUT".equals(method)) {
+            return "update";
+        }
+        if ("PATCH".equals(method)) {
+            return "patch";
+        }
+        if ("DELETE".equals(method)) {
+            return named ? "delete" : "deletecollection";
+        }
+        return method.toLowerCase(Locale.ENGLISH);
+    }
+
+    private static CallStats statsFor(String[] key) {
+        String name = key[0] + " " + key[1] + " " + key[2];
+        CallStats call = stats.get(name);
+        if (call == null) {
+            CallStats created = new CallStats();
+            call = stats.putIfAbsent(name, created);
+            if (call == null) {
+                call = created;
+                JmxUtils.register(created, "ApiCalls", "verb", key[0], "resource", key[1], "namespace", key[2]);
+            }
+        }
+        return call;
+    }
+
+    /**
+     * The counts of all calls made so far, keyed by verb, resource and
+     * namespace separated by spaces
+     */
+    public static Map<String, CallStats> getStats() {
+        return new TreeMap<String, CallStats>(stats);
+    }
+
+    /**
+     * The attributes of the counts of a verb, resource and namespace
+     */
+    public interface CallStatsMXBean {
+        long getCount();
+
+        long getErrors();
+
+        long getBytesSent();
+
+        long getBytesReceived();
+
+        long getMeanMillis();
+
+        long getP50Millis();
+
+        long getP90Millis();
+
+        long getP99Millis();
+
+        long getMaxMillis();
+    }
+
+    public static class CallStats implements CallStatsMXBean {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong bytesSent = new AtomicLong();
+        final AtomicLong bytesReceived = new AtomicLong();
+
+        public long getCount() {
+            return latency.getCount();
+        }
+
+        public long getErrors() {
+            return errors.get();
+        }
+
+        public long getBytesSent() {
+            return bytesSent.get();
+        }
+
+        public long getBytesReceived() {
+            return bytesReceived.get();
+        }
+
+        public long getMeanMillis() {
+            return latency.getMeanMillis();
+        }
+
+        public long getP50Millis() {
+            return latency.getPercentileMillis(0.5);
+        }
+
+        public long getP90Millis() {
+            return latency.getPercentileMillis(0.9);
+        }
+
+        public long getP99Millis() {
+            return latency.getPercentileMillis(0.99);
+        }
+
+        public long getMaxMillis() {
+            return latency.getMaxMillis();
+        }
+    }
+}
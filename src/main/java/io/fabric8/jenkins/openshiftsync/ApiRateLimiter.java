@@ -0,0 +1,189 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Rate limits the API calls of the shared OpenShift client with a token
+ * bucket. A call waiting for a token goes ahead of every waiting call of a
+ * lower priority; the priority of a call is the one set on the calling
+ * thread. Watches are long running and are not limited.
+ */
+public class ApiRateLimiter implements Interceptor {
+    private static final Logger LOGGER = Logger.getLogger(ApiRateLimiter.class.getName());
+
+    static final double QPS = getDouble(".qps", 50);
+    static final double BURST = getDouble(".burst", 100);
+
+    // how long a call waits at most before checking again whether a call of
+    // a higher priority still waits
+    private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * The priority classes, highest first
+     */
+    public enum Priority {
+        /** build cancellations and updates to a final build phase */
+        URGENT,
+        /** starting builds and the jobs of new builds */
+        TRIGGER,
+        /** everything not classified otherwise */
+        NORMAL,
+        /** relists and reconciliation */
+        RELIST
+    }
+
+    private static final ThreadLocal<Priority> priority = new ThreadLocal<Priority>();
+
+    private static final ApiRateLimiter INSTANCE = new ApiRateLimiter(QPS, BURST);
+
+    private final TokenBucket bucket;
+    private final int[] waiting = new int[Priority.values().length];
+    private final LatencyHistogram[] waitTimes = new LatencyHistogram[Priority.values().length];
+    private final AtomicLong[] calls = new AtomicLong[Priority.values().length];
+
+    ApiRateLimiter(double qps, double burst) {
+        this.bucket = qps > 0 ? new TokenBucket(qps, burst) : null;
+        for (int i = 0; i < waitTimes.length; i++) {
+            waitTimes[i] = new LatencyHistogram();
+            calls[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * The limiter shared by all clients the plugin creates, so its counts
+     * survive a reconfiguration
+     */
+    public static ApiRateLimiter get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Sets the priority of the API calls of the current thread.
+     *
+     * @return the previous priority, to restore when done
+     */
+    public static Priority setPriority(Priority newPriority) {
+        Priority previous = getPriority();
+        if (newPriority == null || newPriority == Priority.NORMAL) {
+            priority.remove();
+        } else {
+            priority.set(newPriority);
+        }
+        return previous;
+    }
+
+    public static Priority getPriority() {
+        Priority current = priority.get();
+        return current == null ? Priority.NORMAL : current;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (bucket == null || isWatch(request.url())) {
+            return chain.proceed(request);
+        }
+        Priority callPriority = getPriority();
+        long start = System.nanoTime();
+        try {
+            acquire(callPriority);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to call " + request.method() + " " + request.url());
+        }
+        waitTimes[callPriority.ordinal()].record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        calls[callPriority.ordinal()].incrementAndGet();
+        return chain.proceed(request);
+    }
+
+    void acquire(Priority callPriority) throws InterruptedException {
+        int level = callPriority.ordinal();
+        synchronized (this) {
+            waiting[level]++;
+            try {
+                while (true) {
+                    long now = System.nanoTime();
+                    if (!higherWaiting(level)) {
+                        if (bucket.tryAcquire(now)) {
+                            return;
+                        }
+                        TimeUnit.NANOSECONDS.timedWait(this, Math.max(1, Math.min(bucket.nanosUntilToken(now), MAX_WAIT_NANOS)));
+                    } else {
+                        // woken when a call of a higher priority got its token
+                        TimeUnit.NANOSECONDS.timedWait(this, MAX_WAIT_NANOS);
+                    }
+                }
+            } finally {
+                waiting[level]--;
+                notifyAll();
+            }
+        }
+    }
+
+    private boolean higherWaiting(int level) {
+        for (int i = 0; i < level; i++) {
+            if (waiting[i] > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean isWatch(HttpUrl url) {
+        return "true".equals(url.queryParameter("watch")) || url.encodedPath().contains("/watch/");
+    }
+
+    /**
+     * The number of calls of a priority waiting for a token
+     */
+    public synchronized int getQueueDepth(Priority callPriority) {
+        return waiting[callPriority.ordinal()];
+    }
+
+    /**
+     * How long the calls of a priority waited for a token
+     */
+    public LatencyHistogram getWaitTimes(Priority callPriority) {
+        return waitTimes[callPriority.ordinal()];
+    }
+
+    public long getCallCount(Priority callPriority) {
+        return calls[callPriority.ordinal()].get();
+    }
+
+    private static double getDouble(String property, double defaultValue) {
+        String value = System.getProperty(ApiRateLimiter.class.getName() + property);
+        if (value != null) {
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Ignoring invalid value " + value + " of " + ApiRateLimiter.class.getName() + property);
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -16,15 +16,23 @@
 package io.fabric8.jenkins.openshiftsync;
 
 import static java.net.HttpURLConnection.HTTP_GONE;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.ObjectMeta;
 import io.fabric8.kubernetes.client.KubernetesClientException;
 import io.fabric8.kubernetes.client.Watch;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.csanchez.jenkins.plugins.kubernetes.PodTemplate;
@@ -35,11 +43,26 @@ import jenkins.util.Timer;
 public abstract class BaseWatcher {
     private final Logger LOGGER = Logger.getLogger(BaseWatcher.class.getName());
 
+    // the key of the single watch a cluster wide watcher opens per type
+    static final String ALL_NAMESPACES = "*";
+
     protected ScheduledFuture relister;
     protected final String[] namespaces;
+    private final Set<String> namespaceSet;
+    // list and watch across all namespaces, keeping only the events of the
+    // configured namespaces, instead of opening one watch per namespace
+    protected final boolean clusterWide;
     protected ConcurrentHashMap<String, Watch> watches;
+    protected volatile WatchEventDispatcher dispatcher;
+    // the object of the event being handled on this thread and when the
+    // event was received, for handlers that trace their latency
+    private static final ThreadLocal<HandledEvent> handledEvent = new ThreadLocal<HandledEvent>();
     protected static ConcurrentHashMap<String, List<PodTemplate>> trackedPodTemplates = new ConcurrentHashMap<String, List<PodTemplate>>();
     protected static ConcurrentHashMap<String, String> podTemplateToApiType = new ConcurrentHashMap<String, String>();
+    // pushes the slave label check of config maps and image streams to the
+    // API server, so unrelated objects are never sent to us
+    protected static final Map<String, String> SLAVE_LABEL_SELECTOR = Collections.singletonMap(Constants.OPENSHIFT_LABELS_SLAVE_ROLE,
+            Constants.VALUE_SLAVE_ROLE);
     protected static final String cmType = "ConfigMap";
     protected static final String isType = "ImageStream";
     private final String PT_NAME_CLAIMED = "The event for %s | %s | %s that attempts to add the pod template %s was ignored because a %s previously created a pod template with the same name";
@@ -48,21 +71,171 @@ public abstract class BaseWatcher {
     @SuppressFBWarnings("EI_EXPOSE_REP2")
     public BaseWatcher(String[] namespaces) {
         this.namespaces = namespaces;
+        this.namespaceSet = new HashSet<String>(Arrays.asList(namespaces));
+        GlobalPluginConfiguration config = GlobalPluginConfiguration.get();
+        this.clusterWide = config != null && config.isClusterWideWatch();
         watches = new ConcurrentHashMap<>();
     }
 
+    /**
+     * The keys the timer task lists and watches by: each namespace, or the
+     * single {@link #ALL_NAMESPACES} key in cluster wide mode
+     */
+    protected String[] getWatchScopes() {
+        return clusterWide ? new String[] { ALL_NAMESPACES } : namespaces;
+    }
+
+    /**
+     * The configured namespaces covered by a watch scope
+     */
+    protected Collection<String> namespacesOf(String scope) {
+        return ALL_NAMESPACES.equals(scope) ? namespaceSet : Collections.singleton(scope);
+    }
+
+    /**
+     * The namespace to pass to the list call for a watch scope; null lists
+     * across all namespaces
+     */
+    protected static String listNamespace(String scope) {
+        return ALL_NAMESPACES.equals(scope) ? null : scope;
+    }
+
+    protected boolean isWatchedNamespace(String namespace) {
+        return namespace != null && namespaceSet.contains(namespace);
+    }
+
+    /**
+     * Drops the objects of namespaces this plugin is not configured for, which
+     * a cluster wide list returns as well
+     */
+    protected <T extends HasMetadata> List<T> inWatchedNamespaces(List<T> items) {
+        if (!clusterWide) {
+            return items;
+        }
+        List<T> watched = new ArrayList<T>(items.size());
+        for (T item : items) {
+            if (isWatchedNamespace(item.getMetadata().getNamespace())) {
+                watched.add(item);
+            }
+        }
+        return watched;
+    }
+
     public abstract Runnable getStartTimerTask();
 
     public abstract int getListIntervalInSeconds();
 
     public abstract <T> void eventReceived(io.fabric8.kubernetes.client.Watcher.Action action, T resource);
 
+    /**
+     * The local store this watcher keeps current from its list and watch
+     * calls; the periodic resync of a namespace with a live watch runs against
+     * it instead of the API server
+     */
+    public abstract ResourceCache<? extends HasMetadata> getCache();
+
+    /**
+     * Called on the client thread that received the watch event; hands the
+     * event to the lane owning the object so that a slow handler does not
+     * stall the delivery of further events
+     */
+    public <T> void dispatch(final io.fabric8.kubernetes.client.Watcher.Action action, final T resource) {
+        if (clusterWide && resource instanceof HasMetadata) {
+            ObjectMeta meta = ((HasMetadata) resource).getMetadata();
+            if (meta == null || !isWatchedNamespace(meta.getNamespace())) {
+                return;
+            }
+        }
+        final WatcherMetrics.Stats stats = WatcherMetrics.getFor(getClass().getSimpleName(), resource);
+        final long receivedAt = System.nanoTime();
+        final long receivedAtMillis = System.currentTimeMillis();
+        stats.received(action, resource, receivedAtMillis);
+        WatchEventDispatcher eventDispatcher = dispatcher;
+        if (eventDispatcher == null) {
+            handle(action, resource, stats, receivedAt, receivedAtMillis);
+            return;
+        }
+        eventDispatcher.dispatch(dispatchKey(resource), new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    handle(action, resource, stats, receivedAt, receivedAtMillis);
+                } catch (Throwable t) {
+                    LOGGER.log(Level.WARNING, "Failed to handle " + action + " event", t);
+                }
+            }
+        });
+    }
+
+    private <T> void handle(io.fabric8.kubernetes.client.Watcher.Action action, T resource, WatcherMetrics.Stats stats,
+            long receivedAt, long receivedAtMillis) {
+        long startedAt = System.nanoTime();
+        handledEvent.set(new HandledEvent(resource, receivedAtMillis));
+        try {
+            eventReceived(action, resource);
+        } finally {
+            handledEvent.remove();
+            stats.handled(receivedAt, startedAt, System.nanoTime());
+        }
+    }
+
+    /**
+     * When the watch event being handled on the current thread was received,
+     * in millis, if it is an event of the object with the UID; 0 otherwise
+     */
+    static long getEventReceivedAt(String uid) {
+        HandledEvent event = handledEvent.get();
+        if (uid == null || event == null || !(event.resource instanceof HasMetadata)) {
+            return 0;
+        }
+        ObjectMeta meta = ((HasMetadata) event.resource).getMetadata();
+        return meta != null && uid.equals(meta.getUid()) ? event.receivedAt : 0;
+    }
+
+    private static class HandledEvent {
+        final Object resource;
+        final long receivedAt;
+
+        HandledEvent(Object resource, long receivedAt) {
+            this.resource = resource;
+            this.receivedAt = receivedAt;
+        }
+    }
+
+    private String dispatchKey(Object resource) {
+        if (resource instanceof HasMetadata) {
+            ObjectMeta meta = ((HasMetadata) resource).getMetadata();
+            if (meta != null) {
+                if (meta.getUid() != null) {
+                    return meta.getUid();
+                }
+                return meta.getNamespace() + "/" + meta.getName();
+            }
+        }
+        return null;
+    }
+
     public synchronized void start() {
+        if (dispatcher == null) {
+            dispatcher = new WatchEventDispatcher(getClass().getSimpleName());
+        }
         // lets do this in a background thread to avoid errors like:
         // Tried proxying
         // io.fabric8.jenkins.openshiftsync.GlobalPluginConfiguration to support
         // a circular dependency, but it is not an interface.
-        Runnable task = getStartTimerTask();
+        final Runnable listTask = getStartTimerTask();
+        final WatcherMetrics.Stats stats = WatcherMetrics.get(getClass().getSimpleName(), ALL_NAMESPACES);
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                long start = System.currentTimeMillis();
+                try {
+                    listTask.run();
+                } finally {
+                    stats.relisted(System.currentTimeMillis() - start);
+                }
+            }
+        };
         relister = Timer.get().scheduleAtFixedRate(task, 100, // still do the
                                                               // first run 100
                                                               // milliseconds in
@@ -80,6 +253,13 @@ public abstract class BaseWatcher {
             entry.getValue().close();
             watches.remove(entry.getKey());
         }
+        getCache().clear();
+
+        WatchEventDispatcher eventDispatcher = dispatcher;
+        dispatcher = null;
+        if (eventDispatcher != null) {
+            eventDispatcher.shutdown();
+        }
     }
 
     public void onClose(KubernetesClientException e, String namespace) {
@@ -87,6 +267,7 @@ public abstract class BaseWatcher {
         //we do not want to totally ignore this, as the closing of the
         //watch can effect responsiveness
         LOGGER.info("Watch for type " + this.getClass().getName() + " closed for one of the following namespaces: " + watches.keySet().toString());
+        WatcherMetrics.get(getClass().getSimpleName(), namespace).reconnected();
         if (e != null) {
             LOGGER.warning(e.toString());
 
@@ -98,7 +279,9 @@ public abstract class BaseWatcher {
         // clearing the watches here will signal the extending classes
         // to attempt to re-establish the watch the next time they attempt
         // to list; should shield from rapid/repeated close/reopen cycles
-        // doing it in this fashion
+        // doing it in this fashion; the cache may have missed events from
+        // here on, so it has to be re-seeded by that list as well
+        getCache().invalidate(namespacesOf(namespace));
         watches.remove(namespace);
     }
 
@@ -111,8 +294,8 @@ public abstract class BaseWatcher {
 
     protected boolean hasSlaveLabelOrAnnotation(Map<String, String> map) {
         if (map != null)
-            return map.containsKey("role")
-                    && map.get("role").equals("jenkins-slave");
+            return map.containsKey(Constants.OPENSHIFT_LABELS_SLAVE_ROLE)
+                    && map.get(Constants.OPENSHIFT_LABELS_SLAVE_ROLE).equals(Constants.VALUE_SLAVE_ROLE);
         return false;
     }
     
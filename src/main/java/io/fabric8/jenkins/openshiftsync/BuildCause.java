@@ -41,6 +41,19 @@ public class BuildCause extends Cause {
 
     private long lastUpdateToOpenshift = -1;
 
+    // when, in millis since the epoch, the build was created, received by
+    // the plugin, submitted to the Jenkins queue, started on an executor and
+    // its status was first written back; 0 if unknown
+    private long createdAt;
+
+    private long receivedAt;
+
+    private long queuedAt;
+
+    private long startedAt;
+
+    private long firstStatusUpdateAt;
+
     public BuildCause(String uid, String namespace, String name, String gitUri,
             String commit, String buildConfigUid) {
         this.uid = uid;
@@ -69,6 +82,18 @@ public class BuildCause extends Cause {
         uid = meta.getUid();
         namespace = meta.getNamespace();
         name = meta.getName();
+        if (meta.getCreationTimestamp() != null) {
+            try {
+                createdAt = OpenShiftUtils.parseTimestamp(meta.getCreationTimestamp());
+            } catch (IllegalArgumentException e) {
+                // left unknown
+            }
+        }
+        receivedAt = BaseWatcher.getEventReceivedAt(uid);
+        if (receivedAt == 0) {
+            // found by a list rather than a watch event
+            receivedAt = System.currentTimeMillis();
+        }
 
         if (build.getSpec() != null) {
             if (build.getSpec().getSource() != null
@@ -147,4 +172,36 @@ public class BuildCause extends Cause {
         this.lastUpdateToOpenshift = lastUpdateToOpenshift;
     }
 
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public long getReceivedAt() {
+        return receivedAt;
+    }
+
+    public long getQueuedAt() {
+        return queuedAt;
+    }
+
+    public void setQueuedAt(long queuedAt) {
+        this.queuedAt = queuedAt;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(long startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public long getFirstStatusUpdateAt() {
+        return firstStatusUpdateAt;
+    }
+
+    public void setFirstStatusUpdateAt(long firstStatusUpdateAt) {
+        this.firstStatusUpdateAt = firstStatusUpdateAt;
+    }
+
 }
@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import io.fabric8.kubernetes.api.model.EnvVar;
+import io.fabric8.kubernetes.api.model.ObjectMeta;
+import io.fabric8.openshift.api.model.BuildConfig;
+import io.fabric8.openshift.api.model.BuildConfigSpec;
+import io.fabric8.openshift.api.model.BuildSource;
+import io.fabric8.openshift.api.model.BuildStrategy;
+import io.fabric8.openshift.api.model.GitBuildSource;
+import io.fabric8.openshift.api.model.JenkinsPipelineBuildStrategy;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers, per BuildConfig UID, a 64 bit FNV-1a hash of the fields of the
+ * BuildConfig its job was last synced from, so a relist can skip the
+ * BuildConfigs that did not change before doing any Jenkins or API work. The
+ * resourceVersion and status are left out, since they change with every
+ * build.
+ */
+public final class BuildConfigFingerprints {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final ConcurrentHashMap<String, Long> byUid = new ConcurrentHashMap<String, Long>();
+
+    private BuildConfigFingerprints() {
+    }
+
+    /**
+     * Whether the job of the BuildConfig was synced from a BuildConfig with
+     * the same fingerprint
+     */
+    public static boolean isUnchanged(BuildConfig buildConfig) {
+        String uid = uid(buildConfig);
+        if (uid == null) {
+            return false;
+        }
+        Long recorded = byUid.get(uid);
+        return recorded != null && recorded.longValue() == fingerprint(buildConfig);
+    }
+
+    /**
+     * Records the fingerprint of a BuildConfig its job was synced from
+     */
+    public static void record(BuildConfig buildConfig) {
+        String uid = uid(buildConfig);
+        if (uid != null) {
+            byUid.put(uid, fingerprint(buildConfig));
+        }
+    }
+
+    public static void forget(String uid) {
+        if (uid != null) {
+            byUid.remove(uid);
+        }
+    }
+
+    public static int size() {
+        return byUid.size();
+    }
+
+    static void clear() {
+        byUid.clear();
+    }
+
+    static long fingerprint(BuildConfig buildConfig) {
+        GlobalPluginConfiguration config = GlobalPluginConfiguration.get();
+        return fingerprint(buildConfig, config != null && config.getFoldersEnabled());
+    }
+
+    static long fingerprint(BuildConfig buildConfig, boolean foldersEnabled) {
+        long hash = FNV_OFFSET_BASIS;
+        ObjectMeta metadata = buildConfig.getMetadata();
+        if (metadata != null) {
+            hash = add(hash, metadata.getNamespace());
+            hash = add(hash, metadata.getName());
+            Map<String, String> annotations = metadata.getAnnotations();
+            if (annotations != null) {
+                for (Map.Entry<String, String> annotation : new TreeMap<String, String>(annotations).entrySet()) {
+                    hash = add(hash, annotation.getKey());
+                    hash = add(hash, annotation.getValue());
+                }
+            }
+        }
+        BuildConfigSpec spec = buildConfig.getSpec();
+        if (spec != null) {
+            hash = add(hash, spec.getRunPolicy());
+            BuildSource source = spec.getSource();
+            if (source != null) {
+                hash = add(hash, source.getContextDir());
+                GitBuildSource git = source.getGit();
+                if (git != null) {
+                    hash = add(hash, git.getUri());
+                    hash = add(hash, git.getRef());
+                }
+                if (source.getSourceSecret() != null) {
+                    hash = add(hash, source.getSourceSecret().getName());
+                }
+            }
+            BuildStrategy strategy = spec.getStrategy();
+            if (strategy != null) {
+                hash = add(hash, strategy.getType());
+                JenkinsPipelineBuildStrategy pipeline = strategy.getJenkinsPipelineStrategy();
+                if (pipeline != null) {
+                    hash = add(hash, pipeline.getJenkinsfile());
+                    hash = add(hash, pipeline.getJenkinsfilePath());
+                    if (pipeline.getEnv() != null) {
+                        for (EnvVar env : pipeline.getEnv()) {
+                            hash = add(hash, env.getName());
+                            hash = add(hash, env.getValue());
+                        }
+                    }
+                }
+            }
+        }
+        // the job path depends on it
+        hash = add(hash, foldersEnabled ? "folders" : "");
+        return hash;
+    }
+
+    // hashes the chars of the value followed by a terminator, which keeps
+    // null, "" and adjacent fields apart
+    static long add(long hash, String value) {
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+                hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+            }
+        }
+        hash = (hash ^ (value == null ? 0x1 : 0x0)) * FNV_PRIME;
+        return (hash ^ 0xff) * FNV_PRIME;
+    }
+
+    private static String uid(BuildConfig buildConfig) {
+        return buildConfig.getMetadata() == null ? null : buildConfig.getMetadata().getUid();
+    }
+}
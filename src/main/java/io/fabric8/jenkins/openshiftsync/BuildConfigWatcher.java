@@ -27,7 +27,6 @@ import hudson.triggers.SafeTimerTask;
 import hudson.util.XStream2;
 import io.fabric8.kubernetes.client.Watcher.Action;
 import io.fabric8.openshift.api.model.BuildConfig;
-import io.fabric8.openshift.api.model.BuildConfigList;
 import io.fabric8.openshift.api.model.BuildList;
 import jenkins.model.Jenkins;
 import jenkins.security.NotReallyRoleSensitiveCallable;
@@ -55,6 +54,7 @@ import static io.fabric8.jenkins.openshiftsync.BuildRunPolicy.SERIAL;
 import static io.fabric8.jenkins.openshiftsync.BuildRunPolicy.SERIAL_LATEST_ONLY;
 import static io.fabric8.jenkins.openshiftsync.Constants.OPENSHIFT_BUILD_STATUS_FIELD;
 import static io.fabric8.jenkins.openshiftsync.Constants.OPENSHIFT_LABELS_BUILD_CONFIG_NAME;
+import static io.fabric8.jenkins.openshiftsync.JenkinsUtils.maybeScheduleNext;
 import static io.fabric8.jenkins.openshiftsync.JenkinsUtils.updateJob;
 import static io.fabric8.jenkins.openshiftsync.OpenShiftUtils.*;
 import static java.util.logging.Level.SEVERE;
@@ -74,6 +74,8 @@ public class BuildConfigWatcher extends BaseWatcher {
     // available
     private static final ConcurrentHashSet<String> deletesInProgress = new ConcurrentHashSet<String>();
 
+    private static final ResourceCache<BuildConfig> buildConfigCache = new ResourceCache<BuildConfig>();
+
     public static void deleteInProgress(String bcName) {
         deletesInProgress.add(bcName);
     }
@@ -86,6 +88,18 @@ public class BuildConfigWatcher extends BaseWatcher {
         deletesInProgress.remove(bcID);
     }
 
+    /**
+     * Looks the BuildConfig up in the local store when its namespace is being
+     * watched, only going to the API server for namespaces the store does not
+     * cover (yet)
+     */
+    public static BuildConfig getBuildConfig(String namespace, String name) {
+        if (buildConfigCache.hasSynced(namespace)) {
+            return buildConfigCache.get(namespace, name);
+        }
+        return getAuthenticatedOpenShiftClient().buildConfigs().inNamespace(namespace).withName(name).get();
+    }
+
     @SuppressFBWarnings("EI_EXPOSE_REP2")
     public BuildConfigWatcher(String[] namespaces) {
         super(namespaces);
@@ -104,26 +118,46 @@ public class BuildConfigWatcher extends BaseWatcher {
                     logger.fine("No Openshift Token credential defined.");
                     return;
                 }
-                for (String namespace : namespaces) {
-                    BuildConfigList buildConfigs = null;
+                for (String namespace : getWatchScopes()) {
+                    if (watches.get(namespace) != null && buildConfigCache.hasSynced(namespacesOf(namespace))) {
+                        // the watch is live so the cache is current; resync
+                        // from it rather than listing from the API server
+                        onInitialBuildConfigs(buildConfigCache.list(namespacesOf(namespace)));
+                        continue;
+                    }
+                    String listResourceVersion = null;
                     try {
                         logger.fine("listing BuildConfigs resources");
-                        buildConfigs = getAuthenticatedOpenShiftClient().buildConfigs().inNamespace(namespace).list();
-                        onInitialBuildConfigs(buildConfigs);
+                        buildConfigCache.beginReplace(namespacesOf(namespace));
+                        listResourceVersion = ResourceLister.list(BuildConfig.class, "buildconfigs", true, listNamespace(namespace), null, null,
+                                new ResourceLister.PageHandler<BuildConfig>() {
+                                    @Override
+                                    public void onPage(List<BuildConfig> items) {
+                                        List<BuildConfig> watched = inWatchedNamespaces(items);
+                                        buildConfigCache.addPage(watched);
+                                        onInitialBuildConfigs(watched);
+                                    }
+                                });
+                        buildConfigCache.endReplace(namespacesOf(namespace));
                         logger.fine("handled BuildConfigs resources");
                     } catch (Exception e) {
                         logger.log(SEVERE, "Failed to load BuildConfigs: " + e, e);
                     }
                     try {
                         String resourceVersion = "0";
-                        if (buildConfigs == null) {
+                        if (listResourceVersion == null) {
                             logger.warning("Unable to get build config list; impacts resource version used for watch");
                         } else {
-                            resourceVersion = buildConfigs.getMetadata().getResourceVersion();
+                            resourceVersion = listResourceVersion;
                         }
                         if (watches.get(namespace) == null) {
                             logger.info("creating BuildConfig watch for namespace " + namespace + " and resource version " + resourceVersion);
-                            addWatch(namespace, getAuthenticatedOpenShiftClient().buildConfigs().inNamespace(namespace).withResourceVersion(resourceVersion).watch(new WatcherCallback<BuildConfig>(BuildConfigWatcher.this,namespace)));
+                            WatcherCallback<BuildConfig> callback = new WatcherCallback<BuildConfig>(BuildConfigWatcher.this, namespace);
+                            if (ALL_NAMESPACES.equals(namespace)) {
+                                addWatch(namespace, getAuthenticatedOpenShiftClient().buildConfigs().inAnyNamespace().withResourceVersion(resourceVersion).watch(callback));
+                            } else {
+                                addWatch(namespace, getAuthenticatedOpenShiftClient().buildConfigs().inNamespace(namespace).withResourceVersion(resourceVersion).watch(callback));
+                            }
                         }
                     } catch (Exception e) {
                         logger.log(SEVERE, "Failed to load BuildConfigs: " + e, e);
@@ -144,10 +178,7 @@ public class BuildConfigWatcher extends BaseWatcher {
 
     }
 
-    private void onInitialBuildConfigs(BuildConfigList buildConfigs) {
-        if (buildConfigs == null)
-            return;
-        List<BuildConfig> items = buildConfigs.getItems();
+    private void onInitialBuildConfigs(List<BuildConfig> items) {
         if (items != null) {
             for (BuildConfig buildConfig : items) {
                 try {
@@ -187,10 +218,10 @@ public class BuildConfigWatcher extends BaseWatcher {
                 @Override
                 public Void call() throws Exception {
                     // if bc event came after build events, let's
-                    // poke the BuildWatcher builds with no BC list to
+                    // release the builds parked for this bc to
                     // create job
                     // runs
-                    BuildWatcher.flushBuildsWithNoBCList();
+                    BuildWatcher.flushBuildsWithNoBCList(buildConfig.getMetadata().getNamespace(), buildConfig.getMetadata().getName());
                     // now, if the build event was lost and never
                     // received, builds
                     // will stay in
@@ -208,11 +239,16 @@ public class BuildConfigWatcher extends BaseWatcher {
                                     logger.fine("No Openshift Token credential defined.");
                                     return;
                                 }
-                                BuildList buildList = getAuthenticatedOpenShiftClient().builds().inNamespace(buildConfig.getMetadata().getNamespace()).withField(OPENSHIFT_BUILD_STATUS_FIELD, BuildPhases.NEW)
-                                        .withLabel(OPENSHIFT_LABELS_BUILD_CONFIG_NAME, buildConfig.getMetadata().getName()).list();
-                                if (buildList.getItems().size() > 0) {
-                                    logger.info("build backup query for " + buildConfig.getMetadata().getName() + " found new builds");
-                                    BuildWatcher.onInitialBuilds(buildList);
+                                ApiRateLimiter.Priority previous = ApiRateLimiter.setPriority(ApiRateLimiter.Priority.TRIGGER);
+                                try {
+                                    BuildList buildList = getAuthenticatedOpenShiftClient().builds().inNamespace(buildConfig.getMetadata().getNamespace()).withField(OPENSHIFT_BUILD_STATUS_FIELD, BuildPhases.NEW)
+                                            .withLabel(OPENSHIFT_LABELS_BUILD_CONFIG_NAME, buildConfig.getMetadata().getName()).list();
+                                    if (buildList.getItems().size() > 0) {
+                                        logger.info("build backup query for " + buildConfig.getMetadata().getName() + " found new builds");
+                                        BuildWatcher.onInitialBuilds(buildList);
+                                    }
+                                } finally {
+                                    ApiRateLimiter.setPriority(previous);
                                 }
                             }
                         };
@@ -228,13 +264,28 @@ public class BuildConfigWatcher extends BaseWatcher {
     @Override
     public <T> void eventReceived(io.fabric8.kubernetes.client.Watcher.Action action, T resource) {
         BuildConfig bc = (BuildConfig)resource;
+        buildConfigCache.onEvent(action, bc);
         eventReceived(action, bc);
     }
 
+    @Override
+    public ResourceCache<BuildConfig> getCache() {
+        return buildConfigCache;
+    }
+
     private void upsertJob(final BuildConfig buildConfig) throws Exception {
         if (isPipelineStrategyBuildConfig(buildConfig)) {
-            // sync on intern of name should guarantee sync on same actual obj
-            synchronized (buildConfig.getMetadata().getUid().intern()) {
+            // most BuildConfigs of a relist did not change since their job
+            // was last synced
+            if (BuildConfigFingerprints.isUnchanged(buildConfig) && getJobFromBuildConfig(buildConfig) != null) {
+                return;
+            }
+            final String uid = buildConfig.getMetadata().getUid();
+            if (!UidLocks.tryLock(uid)) {
+                logger.warning("Timed out waiting to update the job for BuildConfig " + NamespaceName.create(buildConfig) + "; it will be retried on the next resync");
+                return;
+            }
+            try {
                 ACL.impersonate(ACL.SYSTEM, new NotReallyRoleSensitiveCallable<Void, Exception>() {
                     @Override
                     public Void call() throws Exception {
@@ -256,72 +307,84 @@ public class BuildConfigWatcher extends BaseWatcher {
                             parent = getFullNameParent(activeInstance, jobFullName, getNamespace(buildConfig));
                             job = new WorkflowJob(parent, jobName);
                         }
+                        Map<String, ParameterDefinition> paramMap;
                         BulkChange bk = new BulkChange(job);
+                        try {
+                            job.setDisplayName(jenkinsJobDisplayName(buildConfig));
 
-                        job.setDisplayName(jenkinsJobDisplayName(buildConfig));
-
-                        FlowDefinition flowFromBuildConfig = mapBuildConfigToFlow(buildConfig);
-                        if (flowFromBuildConfig == null) {
-                            return null;
-                        }
-
-                        job.setDefinition(flowFromBuildConfig);
-
-                        String existingBuildRunPolicy = null;
-
-                        BuildConfigProjectProperty buildConfigProjectProperty = job.getProperty(BuildConfigProjectProperty.class);
-                        if (buildConfigProjectProperty != null) {
-                            existingBuildRunPolicy = buildConfigProjectProperty.getBuildRunPolicy();
-                            long updatedBCResourceVersion = parseResourceVersion(buildConfig);
-                            long oldBCResourceVersion = parseResourceVersion(buildConfigProjectProperty.getResourceVersion());
-                            BuildConfigProjectProperty newProperty = new BuildConfigProjectProperty(buildConfig);
-                            if (updatedBCResourceVersion <= oldBCResourceVersion && newProperty.getUid().equals(buildConfigProjectProperty.getUid()) && newProperty.getNamespace().equals(buildConfigProjectProperty.getNamespace())
-                                    && newProperty.getName().equals(buildConfigProjectProperty.getName()) && newProperty.getBuildRunPolicy().equals(buildConfigProjectProperty.getBuildRunPolicy())) {
+                            FlowDefinition flowFromBuildConfig = mapBuildConfigToFlow(buildConfig);
+                            if (flowFromBuildConfig == null) {
                                 return null;
                             }
-                            buildConfigProjectProperty.setUid(newProperty.getUid());
-                            buildConfigProjectProperty.setNamespace(newProperty.getNamespace());
-                            buildConfigProjectProperty.setName(newProperty.getName());
-                            buildConfigProjectProperty.setResourceVersion(newProperty.getResourceVersion());
-                            buildConfigProjectProperty.setBuildRunPolicy(newProperty.getBuildRunPolicy());
-                        } else {
-                            job.addProperty(new BuildConfigProjectProperty(buildConfig));
-                        }
 
-                        // (re)populate job param list with any envs
-                        // from the build config
-                        Map<String, ParameterDefinition> paramMap = JenkinsUtils.addJobParamForBuildEnvs(job, buildConfig.getSpec().getStrategy().getJenkinsPipelineStrategy(), true);
+                            job.setDefinition(flowFromBuildConfig);
 
-                        job.setConcurrentBuild(!(buildConfig.getSpec().getRunPolicy().equals(SERIAL) || buildConfig.getSpec().getRunPolicy().equals(SERIAL_LATEST_ONLY)));
+                            String existingBuildRunPolicy = null;
 
-                        InputStream jobStream = new StringInputStream(new XStream2().toXML(job));
-
-                        if (newJob) {
-                            try {
-                                if (parent instanceof Folder) {
-                                    Folder folder = (Folder) parent;
-                                    folder.createProjectFromXML(jobName, jobStream).save();
-                                } else {
-                                    activeInstance.createProjectFromXML(jobName, jobStream).save();
+                            BuildConfigProjectProperty buildConfigProjectProperty = job.getProperty(BuildConfigProjectProperty.class);
+                            if (buildConfigProjectProperty != null) {
+                                existingBuildRunPolicy = buildConfigProjectProperty.getBuildRunPolicy();
+                                long updatedBCResourceVersion = parseResourceVersion(buildConfig);
+                                long oldBCResourceVersion = parseResourceVersion(buildConfigProjectProperty.getResourceVersion());
+                                BuildConfigProjectProperty newProperty = new BuildConfigProjectProperty(buildConfig);
+                                if (updatedBCResourceVersion <= oldBCResourceVersion && newProperty.getUid().equals(buildConfigProjectProperty.getUid()) && newProperty.getNamespace().equals(buildConfigProjectProperty.getNamespace())
+                                        && newProperty.getName().equals(buildConfigProjectProperty.getName()) && newProperty.getBuildRunPolicy().equals(buildConfigProjectProperty.getBuildRunPolicy())) {
+                                    BuildConfigFingerprints.record(buildConfig);
+                                    return null;
                                 }
+                                buildConfigProjectProperty.setUid(newProperty.getUid());
+                                buildConfigProjectProperty.setNamespace(newProperty.getNamespace());
+                                buildConfigProjectProperty.setName(newProperty.getName());
+                                buildConfigProjectProperty.setResourceVersion(newProperty.getResourceVersion());
+                                buildConfigProjectProperty.setBuildRunPolicy(newProperty.getBuildRunPolicy());
+                            } else {
+                                job.addProperty(new BuildConfigProjectProperty(buildConfig));
+                            }
 
-                                logger.info("Created job " + jobName + " from BuildConfig " + NamespaceName.create(buildConfig) + " with revision: " + buildConfig.getMetadata().getResourceVersion());
-                            } catch (IllegalArgumentException e) {
-                                // see
-                                // https://github.com/openshift/jenkins-sync-plugin/issues/117,
-                                // jenkins might reload existing jobs on
-                                // startup between the
-                                // newJob check above and when we make
-                                // the createProjectFromXML call; if so,
-                                // retry as an update
-                                updateJob(job, jobStream, existingBuildRunPolicy, buildConfigProjectProperty);
+                            // (re)populate job param list with any envs
+                            // from the build config
+                            paramMap = JenkinsUtils.addJobParamForBuildEnvs(job, buildConfig.getSpec().getStrategy().getJenkinsPipelineStrategy(), true);
+
+                            job.setConcurrentBuild(!(buildConfig.getSpec().getRunPolicy().equals(SERIAL) || buildConfig.getSpec().getRunPolicy().equals(SERIAL_LATEST_ONLY)));
+
+                            if (newJob) {
+                                // the job is not known to Jenkins yet, so it
+                                // is created from its XML, which also writes it
+                                InputStream jobStream = new StringInputStream(new XStream2().toXML(job));
+                                bk.abort();
+                                try {
+                                    if (parent instanceof Folder) {
+                                        Folder folder = (Folder) parent;
+                                        folder.createProjectFromXML(jobName, jobStream);
+                                    } else {
+                                        activeInstance.createProjectFromXML(jobName, jobStream);
+                                    }
+
+                                    logger.info("Created job " + jobName + " from BuildConfig " + NamespaceName.create(buildConfig) + " with revision: " + buildConfig.getMetadata().getResourceVersion());
+                                } catch (IllegalArgumentException e) {
+                                    // see
+                                    // https://github.com/openshift/jenkins-sync-plugin/issues/117,
+                                    // jenkins might reload existing jobs on
+                                    // startup between the
+                                    // newJob check above and when we make
+                                    // the createProjectFromXML call; if so,
+                                    // retry as an update
+                                    updateJob(job, jobStream, existingBuildRunPolicy, buildConfigProjectProperty);
+                                    logger.info("Updated job " + jobName + " from BuildConfig " + NamespaceName.create(buildConfig) + " with revision: " + buildConfig.getMetadata().getResourceVersion());
+                                }
+                            } else {
+                                // the job is the live one, already updated in
+                                // place above; write it once
+                                bk.commit();
+                                if (existingBuildRunPolicy != null && !existingBuildRunPolicy.equals(buildConfigProjectProperty.getBuildRunPolicy())) {
+                                    maybeScheduleNext(job);
+                                }
                                 logger.info("Updated job " + jobName + " from BuildConfig " + NamespaceName.create(buildConfig) + " with revision: " + buildConfig.getMetadata().getResourceVersion());
                             }
-                        } else {
-                            updateJob(job, jobStream, existingBuildRunPolicy, buildConfigProjectProperty);
-                            logger.info("Updated job " + jobName + " from BuildConfig " + NamespaceName.create(buildConfig) + " with revision: " + buildConfig.getMetadata().getResourceVersion());
+                        } finally {
+                            // no-op once committed or aborted
+                            bk.abort();
                         }
-                        bk.commit();
                         String fullName = job.getFullName();
                         WorkflowJob workflowJob = activeInstance.getItemByFullName(fullName, WorkflowJob.class);
                         if (workflowJob == null && parent instanceof Folder) {
@@ -338,10 +401,13 @@ public class BuildConfigWatcher extends BaseWatcher {
                         } else {
                             JenkinsUtils.verifyEnvVars(paramMap, workflowJob, buildConfig);
                             putJobWithBuildConfig(workflowJob, buildConfig);
+                            BuildConfigFingerprints.record(buildConfig);
                         }
                         return null;
                     }
                 });
+            } finally {
+                UidLocks.unlock(uid);
             }
         }
     }
@@ -362,9 +428,9 @@ public class BuildConfigWatcher extends BaseWatcher {
     private void innerDeleteEventToJenkinsJob(final BuildConfig buildConfig) throws Exception {
         final Job job = getJobFromBuildConfig(buildConfig);
         if (job != null) {
-            // employ intern of the BC UID to facilitate sync'ing on the same
-            // actual object
-            synchronized (buildConfig.getMetadata().getUid().intern()) {
+            final String uid = buildConfig.getMetadata().getUid();
+            UidLocks.lock(uid);
+            try {
                 ACL.impersonate(ACL.SYSTEM, new NotReallyRoleSensitiveCallable<Void, Exception>() {
                     @Override
                     public Void call() throws Exception {
@@ -383,6 +449,8 @@ public class BuildConfigWatcher extends BaseWatcher {
                 // be deleted as well (called function will cross reference
                 // with secret watch)
                 CredentialsUtils.deleteSourceCredentials(buildConfig);
+            } finally {
+                UidLocks.unlock(uid);
             }
 
         }
@@ -401,13 +469,15 @@ public class BuildConfigWatcher extends BaseWatcher {
     private void deleteEventToJenkinsJob(final BuildConfig buildConfig) throws Exception {
         String bcUid = buildConfig.getMetadata().getUid();
         if (bcUid != null && bcUid.length() > 0) {
-            // employ intern of the BC UID to facilitate sync'ing on the same
-            // actual object
-            bcUid = bcUid.intern();
-            synchronized (bcUid) {
+            UidLocks.lock(bcUid);
+            try {
                 innerDeleteEventToJenkinsJob(buildConfig);
-                return;
+            } finally {
+                UidLocks.unlock(bcUid);
             }
+            UidLocks.forget(bcUid);
+            BuildConfigFingerprints.forget(bcUid);
+            return;
         }
         // uid should not be null / empty, but just in case, still clean up
         innerDeleteEventToJenkinsJob(buildConfig);
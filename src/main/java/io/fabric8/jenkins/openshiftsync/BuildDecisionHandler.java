@@ -22,8 +22,6 @@ import hudson.model.Cause;
 import hudson.model.CauseAction;
 import hudson.model.ParametersAction;
 import hudson.model.Queue;
-import io.fabric8.openshift.api.model.Build;
-import io.fabric8.openshift.api.model.BuildRequestBuilder;
 
 import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.plugins.workflow.job.WorkflowJob;
@@ -32,10 +30,6 @@ import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import static io.fabric8.jenkins.openshiftsync.BuildSyncRunListener.joinPaths;
-import static io.fabric8.jenkins.openshiftsync.OpenShiftUtils.getAuthenticatedOpenShiftClient;
-import static io.fabric8.jenkins.openshiftsync.OpenShiftUtils.getJenkinsURL;
-
 @Extension
 public class BuildDecisionHandler extends Queue.QueueDecisionHandler {
 
@@ -54,47 +48,26 @@ public class BuildDecisionHandler extends Queue.QueueDecisionHandler {
                     && StringUtils.isNotBlank(buildConfigProjectProperty
                             .getName())) {
 
-                String namespace = buildConfigProjectProperty.getNamespace();
-                String jobURL = joinPaths(
-                        getJenkinsURL(getAuthenticatedOpenShiftClient(),
-                                namespace), wj.getUrl());
-
-                Build ret = getAuthenticatedOpenShiftClient()
-                        .buildConfigs()
-                        .inNamespace(namespace)
-                        .withName(buildConfigProjectProperty.getName())
-                        .instantiate(
-                                new BuildRequestBuilder()
-                                        .withNewMetadata()
-                                        .withName(
-                                                buildConfigProjectProperty
-                                                        .getName())
-                                        .and()
-                                        .addNewTriggeredBy()
-                                        .withMessage(
-                                                "Triggered by Jenkins job at "
-                                                        + jobURL).and().build());
-
+                // the instantiate call, and finding the Jenkins URL for its
+                // message, go to the API server; hand them off rather than
+                // hold the queue lock while they run
                 ParametersAction params = dumpParams(actions);
-                if (LOGGER.isLoggable(Level.FINE)) {
+                if (params != null && LOGGER.isLoggable(Level.FINE)) {
                     LOGGER.fine("ParametersAction: " + params.toString());
                 }
-                if (params != null && ret != null)
-                    BuildToActionMapper.addParameterAction(ret.getMetadata()
-                            .getName(), params);
 
                 CauseAction cause = dumpCause(actions);
-                if (LOGGER.isLoggable(Level.FINE)) {
+                if (cause != null && LOGGER.isLoggable(Level.FINE)) {
                     LOGGER.fine("get CauseAction: " + cause.getDisplayName());
                     for (Cause c : cause.getCauses()) {
                         LOGGER.fine("Cause: " + c.getShortDescription());
                     }
                 }
-                if (cause != null && ret != null)
-                    BuildToActionMapper.addCauseAction(ret.getMetadata()
-                            .getName(), cause);
 
-                return false;
+                // if the instantiator is backed up, run the job without a
+                // build rather than dropping what the user asked for
+                return !BuildInstantiator.submit(buildConfigProjectProperty.getNamespace(),
+                        buildConfigProjectProperty.getName(), wj.getUrl(), params, cause);
             }
         }
 
@@ -0,0 +1,376 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import hudson.model.CauseAction;
+import hudson.model.ParametersAction;
+import hudson.triggers.SafeTimerTask;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.openshift.api.model.Build;
+import io.fabric8.openshift.api.model.BuildRequestBuilder;
+import io.fabric8.openshift.api.model.BuildTriggerCause;
+import jenkins.util.Timer;
+
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.net.ssl.SSLHandshakeException;
+
+import static io.fabric8.jenkins.openshiftsync.BuildSyncRunListener.joinPaths;
+import static io.fabric8.jenkins.openshiftsync.Constants.OPENSHIFT_LABELS_BUILD_CONFIG_NAME;
+import static io.fabric8.jenkins.openshiftsync.OpenShiftUtils.getAuthenticatedOpenShiftClient;
+import static io.fabric8.jenkins.openshiftsync.OpenShiftUtils.getJenkinsURL;
+
+/**
+ * Instantiates OpenShift builds for Jenkins job runs started from Jenkins,
+ * off the thread that holds the Jenkins queue lock. Requests wait in a
+ * bounded queue and are drained in batches by a small pool of workers,
+ * grouped by namespace. Failures that may be transient are retried with a
+ * growing delay; when a failed call may still have created the build, the
+ * retry first looks for it by the request marker in its trigger message.
+ */
+public class BuildInstantiator {
+    private static final Logger LOGGER = Logger.getLogger(BuildInstantiator.class.getName());
+
+    static final int THREADS = Integer.getInteger(BuildInstantiator.class.getName() + ".threads", 4);
+    static final int QUEUE_SIZE = Integer.getInteger(BuildInstantiator.class.getName() + ".queueSize", 1000);
+    static final int BATCH_SIZE = Integer.getInteger(BuildInstantiator.class.getName() + ".batchSize", 50);
+    static final int MAX_ATTEMPTS = Integer.getInteger(BuildInstantiator.class.getName() + ".maxAttempts", 4);
+    static final long RETRY_DELAY_MILLIS = Long.getLong(BuildInstantiator.class.getName() + ".retryDelayMillis", 1000L);
+
+    private static final LinkedBlockingQueue<Request> pending = new LinkedBlockingQueue<Request>(Math.max(1, QUEUE_SIZE));
+
+    // every submit schedules a drain; when the executor's own queue is full a
+    // drain is already waiting and will pick the request up, so extra drains
+    // are simply discarded
+    private static final ThreadPoolExecutor workers = new ThreadPoolExecutor(Math.max(1, THREADS), Math.max(1, THREADS), 60L,
+            TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(Math.max(1, QUEUE_SIZE)),
+            new NamingThreadFactory(new DaemonThreadFactory(), "OpenShift build instantiator"), new ThreadPoolExecutor.DiscardPolicy());
+    static {
+        workers.allowCoreThreadTimeOut(true);
+    }
+
+    private static final LatencyHistogram latency = new LatencyHistogram();
+    private static final AtomicLong submitted = new AtomicLong();
+    private static final AtomicLong succeeded = new AtomicLong();
+    private static final AtomicLong failed = new AtomicLong();
+    private static final AtomicLong retried = new AtomicLong();
+    private static final AtomicLong rejected = new AtomicLong();
+
+    private static final Runnable DRAIN = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * Queues the instantiation of a build for the BuildConfig
+     *
+     * @return false if the queue is full and the request was dropped, in
+     *         which case the caller should run the job without a build
+     */
+    public static boolean submit(String namespace, String buildConfigName, String jobPath, ParametersAction params, CauseAction cause) {
+        return submit(new Request(namespace, buildConfigName, jobPath, params, cause));
+    }
+
+    private static boolean submit(Request request) {
+        if (!pending.offer(request)) {
+            rejected.incrementAndGet();
+            LOGGER.severe("Too many OpenShift builds waiting to be instantiated; not instantiating a build of BuildConfig "
+                    + request.namespace + "/" + request.buildConfigName
+                    + (request.attempt == 0 ? ", the job runs without one" : " after a failed attempt"));
+            return false;
+        }
+        if (request.attempt == 0) {
+            submitted.incrementAndGet();
+        }
+        workers.execute(DRAIN);
+        return true;
+    }
+
+    private static void drain() {
+        List<Request> batch = new ArrayList<Request>();
+        pending.drainTo(batch, Math.max(1, BATCH_SIZE));
+        if (batch.isEmpty()) {
+            return;
+        }
+        Map<String, List<Request>> byNamespace = new LinkedHashMap<String, List<Request>>();
+        for (Request request : batch) {
+            List<Request> requests = byNamespace.get(request.namespace);
+            if (requests == null) {
+                requests = new ArrayList<Request>();
+                byNamespace.put(request.namespace, requests);
+            }
+            requests.add(request);
+        }
+        ApiRateLimiter.Priority previous = ApiRateLimiter.setPriority(ApiRateLimiter.Priority.TRIGGER);
+        try {
+            for (Map.Entry<String, List<Request>> entry : byNamespace.entrySet()) {
+                String namespace = entry.getKey();
+                for (Request request : entry.getValue()) {
+                    try {
+                        instantiate(request, getJenkinsURL(getAuthenticatedOpenShiftClient(), namespace));
+                    } catch (Exception e) {
+                        onFailure(request, e);
+                    }
+                }
+            }
+        } finally {
+            ApiRateLimiter.setPriority(previous);
+        }
+        if (!pending.isEmpty()) {
+            workers.execute(DRAIN);
+        }
+    }
+
+    private static void instantiate(Request request, String jenkinsUrl) {
+        if (request.checkCreated) {
+            Build created = findCreated(request);
+            if (created != null) {
+                LOGGER.info("Build " + request.namespace + "/" + created.getMetadata().getName()
+                        + " was created by an earlier attempt that seemed to fail, not instantiating another one");
+                onCreated(request, created);
+                return;
+            }
+        }
+        String jobURL = joinPaths(jenkinsUrl, request.jobPath);
+        long start = System.currentTimeMillis();
+        Build ret;
+        try {
+            ret = getAuthenticatedOpenShiftClient().buildConfigs().inNamespace(request.namespace).withName(request.buildConfigName)
+                    .instantiate(new BuildRequestBuilder().withNewMetadata().withName(request.buildConfigName).and()
+                            .addNewTriggeredBy().withMessage("Triggered by Jenkins job at " + jobURL + " " + request.marker())
+                            .and().build());
+        } finally {
+            latency.record(System.currentTimeMillis() - start);
+        }
+        onCreated(request, ret);
+    }
+
+    // the build of the BuildConfig whose trigger message carries the marker
+    // of the request, if an earlier attempt created one
+    private static Build findCreated(Request request) {
+        final String marker = request.marker();
+        final Build[] found = new Build[1];
+        try {
+            ResourceLister.list(Build.class, "builds", true, request.namespace,
+                    Collections.singletonMap(OPENSHIFT_LABELS_BUILD_CONFIG_NAME, request.buildConfigName), null,
+                    ApiRateLimiter.Priority.TRIGGER, new ResourceLister.PageHandler<Build>() {
+                        @Override
+                        public void onPage(List<Build> items) {
+                            for (Build build : items) {
+                                if (found[0] == null && isTriggeredBy(build, marker)) {
+                                    found[0] = build;
+                                }
+                            }
+                        }
+                    });
+        } catch (KubernetesClientException e) {
+            throw e;
+        } catch (Exception e) {
+            // retried like a failed instantiate call
+            throw new KubernetesClientException("Failed to list the builds of BuildConfig " + request.namespace + "/"
+                    + request.buildConfigName, e);
+        }
+        return found[0];
+    }
+
+    private static boolean isTriggeredBy(Build build, String marker) {
+        if (build.getSpec() == null || build.getSpec().getTriggeredBy() == null) {
+            return false;
+        }
+        for (BuildTriggerCause trigger : build.getSpec().getTriggeredBy()) {
+            if (trigger.getMessage() != null && trigger.getMessage().endsWith(marker)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void onCreated(Request request, Build ret) {
+        if (ret == null) {
+            failed.incrementAndGet();
+            LOGGER.warning("Instantiating a build of BuildConfig " + request.namespace + "/" + request.buildConfigName
+                    + " returned no build");
+            return;
+        }
+        succeeded.incrementAndGet();
+        if (request.params != null) {
+            BuildToActionMapper.addParameterAction(ret.getMetadata().getName(), request.params);
+        }
+        if (request.cause != null) {
+            BuildToActionMapper.addCauseAction(ret.getMetadata().getName(), request.cause);
+        }
+    }
+
+    private static void onFailure(final Request request, Exception e) {
+        Retry decision = retryOf(e);
+        if (decision == Retry.NO || request.attempt + 1 >= MAX_ATTEMPTS) {
+            failed.incrementAndGet();
+            LOGGER.log(Level.WARNING, "Failed to instantiate a build of BuildConfig " + request.namespace + "/" + request.buildConfigName
+                    + " after " + (request.attempt + 1) + " attempts", e);
+            return;
+        }
+        retried.incrementAndGet();
+        final Request retry = request.next(decision == Retry.IF_NOT_CREATED);
+        long delay = RETRY_DELAY_MILLIS << (retry.attempt - 1);
+        LOGGER.fine("retrying the instantiation of a build of BuildConfig " + request.namespace + "/" + request.buildConfigName + " in "
+                + delay + "ms: " + e);
+        Timer.get().schedule(new SafeTimerTask() {
+            @Override
+            protected void doRun() throws Exception {
+                submit(retry);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Whether an idempotent call that failed with the exception may succeed
+     * when tried again
+     */
+    static boolean isRetriable(Exception e) {
+        if (e instanceof KubernetesClientException) {
+            int code = ((KubernetesClientException) e).getCode();
+            // no status means the call never got a response
+            return code <= 0 || code == 429 || code >= 500;
+        }
+        return false;
+    }
+
+    enum Retry {
+        NO,
+        YES,
+        // only once it is known that the failed call did not create a build
+        IF_NOT_CREATED
+    }
+
+    /**
+     * Whether an instantiate call that failed with the exception may be tried
+     * again. The call is not idempotent: one that timed out or failed with a
+     * server error may still have created the build.
+     */
+    static Retry retryOf(Exception e) {
+        if (!(e instanceof KubernetesClientException)) {
+            return Retry.NO;
+        }
+        int code = ((KubernetesClientException) e).getCode();
+        if (code == 429 || code == 503) {
+            // rejected before the build was created
+            return Retry.YES;
+        }
+        if (code <= 0) {
+            return isNotSent(e) ? Retry.YES : Retry.IF_NOT_CREATED;
+        }
+        return code >= 500 ? Retry.IF_NOT_CREATED : Retry.NO;
+    }
+
+    // connection failures that happen before any of the request is sent
+    static boolean isNotSent(Throwable e) {
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException || cause instanceof NoRouteToHostException || cause instanceof UnknownHostException
+                    || cause instanceof SSLHandshakeException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static int getPendingCount() {
+        return pending.size();
+    }
+
+    public static long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    public static long getSucceededCount() {
+        return succeeded.get();
+    }
+
+    public static long getFailedCount() {
+        return failed.get();
+    }
+
+    public static long getRetriedCount() {
+        return retried.get();
+    }
+
+    public static long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Latency of the instantiate calls to the API server, including failed
+     * ones
+     */
+    public static LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    private static class Request {
+        final String namespace;
+        final String buildConfigName;
+        final String jobPath;
+        final ParametersAction params;
+        final CauseAction cause;
+        final int attempt;
+        // identifies the builds created for this request across attempts
+        final String id;
+        // whether an earlier attempt may have created the build
+        final boolean checkCreated;
+
+        Request(String namespace, String buildConfigName, String jobPath, ParametersAction params, CauseAction cause) {
+            this(namespace, buildConfigName, jobPath, params, cause, 0, UUID.randomUUID().toString(), false);
+        }
+
+        private Request(String namespace, String buildConfigName, String jobPath, ParametersAction params, CauseAction cause,
+                int attempt, String id, boolean checkCreated) {
+            this.namespace = namespace;
+            this.buildConfigName = buildConfigName;
+            this.jobPath = jobPath;
+            this.params = params;
+            this.cause = cause;
+            this.attempt = attempt;
+            this.id = id;
+            this.checkCreated = checkCreated;
+        }
+
+        Request next(boolean mayBeCreated) {
+            return new Request(namespace, buildConfigName, jobPath, params, cause, attempt + 1, id, checkCreated || mayBeCreated);
+        }
+
+        String marker() {
+            return "(request " + id + ")";
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import static io.fabric8.jenkins.openshiftsync.OpenShiftUtils.getAuthenticatedOpenShiftClient;
+import static io.fabric8.jenkins.openshiftsync.OpenShiftUtils.getHttpClient;
+import static java.net.HttpURLConnection.HTTP_CONFLICT;
+
+/**
+ * Writes annotations and status fields of a Build with a single JSON merge
+ * patch, instead of reading the whole Build and replacing it. Only the given
+ * fields are sent and no resourceVersion is included, so changes other
+ * controllers make to the Build in the meantime neither conflict nor get
+ * overwritten.
+ */
+public class BuildPatcher {
+    private static final Logger LOGGER = Logger.getLogger(BuildPatcher.class.getName());
+
+    static final MediaType MERGE_PATCH = MediaType.parse("application/merge-patch+json");
+
+    // the API server may still report a conflict if the object changes while
+    // it applies the patch; trying again is all it takes
+    static final int MAX_ATTEMPTS = Integer.getInteger(BuildPatcher.class.getName() + ".maxAttempts", 3);
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Patches a Build. Null values are left out of the patch, so they leave
+     * the current value alone rather than removing it.
+     *
+     * @param annotations
+     *            the annotations to set, or null
+     * @param status
+     *            the status fields to set, or null
+     */
+    public static void patch(String namespace, String name, Map<String, String> annotations, Map<String, Object> status) {
+        byte[] body;
+        try {
+            body = mapper.writeValueAsBytes(mergePatch(annotations, status));
+        } catch (IOException e) {
+            throw new KubernetesClientException("Failed to serialize the patch of build " + namespace + "/" + name, e);
+        }
+        // cancellations and final phases go ahead of other calls
+        ApiRateLimiter.Priority previous = null;
+        if (status != null && BuildPhases.isTerminal(status.get("phase"))) {
+            previous = ApiRateLimiter.setPriority(ApiRateLimiter.Priority.URGENT);
+        }
+        try {
+            for (int attempt = 1;; attempt++) {
+                int code = send(namespace, name, body);
+                if (code == HTTP_CONFLICT && attempt < MAX_ATTEMPTS) {
+                    LOGGER.fine("conflict patching build " + namespace + "/" + name + ", trying again");
+                    continue;
+                }
+                if (code < 200 || code >= 300) {
+                    throw new KubernetesClientException("Failure patching build " + namespace + "/" + name + ": " + code, code, null);
+                }
+                return;
+            }
+        } finally {
+            if (previous != null) {
+                ApiRateLimiter.setPriority(previous);
+            }
+        }
+    }
+
+    static Map<String, Object> mergePatch(Map<String, String> annotations, Map<String, Object> status) {
+        Map<String, Object> patch = new LinkedHashMap<String, Object>();
+        Map<String, String> setAnnotations = withoutNulls(annotations);
+        if (!setAnnotations.isEmpty()) {
+            Map<String, Object> metadata = new LinkedHashMap<String, Object>();
+            metadata.put("annotations", setAnnotations);
+            patch.put("metadata", metadata);
+        }
+        Map<String, Object> setStatus = withoutNulls(status);
+        if (!setStatus.isEmpty()) {
+            patch.put("status", setStatus);
+        }
+        return patch;
+    }
+
+    private static <V> Map<String, V> withoutNulls(Map<String, V> fields) {
+        Map<String, V> result = new LinkedHashMap<String, V>();
+        if (fields != null) {
+            for (Map.Entry<String, V> field : fields.entrySet()) {
+                if (field.getValue() != null) {
+                    result.put(field.getKey(), field.getValue());
+                }
+            }
+        }
+        return result;
+    }
+
+    private static int send(String namespace, String name, byte[] body) {
+        HttpUrl url = HttpUrl.get(getAuthenticatedOpenShiftClient().getOpenshiftUrl()).newBuilder().addPathSegment("namespaces")
+                .addPathSegment(namespace).addPathSegment("builds").addPathSegment(name).build();
+        Request request = new Request.Builder().url(url).patch(RequestBody.create(MERGE_PATCH, body)).build();
+        try {
+            Response response = getHttpClient().newCall(request).execute();
+            try {
+                return response.code();
+            } finally {
+                response.body().close();
+            }
+        } catch (IOException e) {
+            throw new KubernetesClientException("Failure patching build " + namespace + "/" + name, e);
+        }
+    }
+}
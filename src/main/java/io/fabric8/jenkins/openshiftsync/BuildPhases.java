@@ -46,4 +46,9 @@ public class BuildPhases {
     // executing.
     public static final String CANCELLED = "Cancelled";
 
+    // isTerminal tells whether a build in the phase is done.
+    public static boolean isTerminal(Object phase) {
+        return COMPLETE.equals(phase) || FAILED.equals(phase) || ERROR.equals(phase) || CANCELLED.equals(phase);
+    }
+
 }
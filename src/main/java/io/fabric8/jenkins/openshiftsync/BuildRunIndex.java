@@ -0,0 +1,174 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * In memory index from OpenShift build UID to the number of the job run
+ * started for it, per job. The runs of a job are scanned once, the first time
+ * the job is looked up; from then on the index is kept current by
+ * {@link BuildSyncRunListener}, so finding the run of a build no longer loads
+ * every run record of the job from disk.
+ *
+ * Entries are hints: callers load the run by number and check its
+ * {@link BuildCause}, dropping entries that turn out to be stale.
+ */
+public final class BuildRunIndex {
+    private static final Logger LOGGER = Logger.getLogger(BuildRunIndex.class.getName());
+
+    // job full name -> runs of the job
+    private static final ConcurrentHashMap<String, JobRuns> byJob = new ConcurrentHashMap<String, JobRuns>();
+
+    private BuildRunIndex() {
+    }
+
+    /**
+     * Records the run of a build, if the run was started for one
+     */
+    public static void add(WorkflowRun run) {
+        BuildCause cause = run.getCause(BuildCause.class);
+        if (cause == null || cause.getUid() == null) {
+            return;
+        }
+        add(run.getParent().getFullName(), cause.getUid(), run.getNumber());
+    }
+
+    static void add(String jobName, String buildUid, int number) {
+        jobRuns(jobName).runs.put(buildUid, new IndexedRun(number, System.currentTimeMillis()));
+    }
+
+    public static void remove(WorkflowRun run) {
+        BuildCause cause = run.getCause(BuildCause.class);
+        if (cause == null || cause.getUid() == null) {
+            return;
+        }
+        remove(run.getParent().getFullName(), cause.getUid());
+    }
+
+    static void remove(String jobName, String buildUid) {
+        JobRuns jobRuns = byJob.get(jobName);
+        if (jobRuns != null) {
+            jobRuns.runs.remove(buildUid);
+        }
+    }
+
+    /**
+     * Drops the index of a job that was deleted or renamed
+     */
+    public static void forget(String jobName) {
+        byJob.remove(jobName);
+    }
+
+    /**
+     * The build UIDs of the job's runs with when each was indexed, scanning
+     * the job's runs first if this is the first lookup for the job
+     */
+    public static Map<String, IndexedRun> getRuns(WorkflowJob job) {
+        return new HashMap<String, IndexedRun>(scanned(job).runs);
+    }
+
+    /**
+     * The number of the job's run for the build, or -1 if there is none
+     */
+    public static int getRunNumber(WorkflowJob job, String buildUid) {
+        if (buildUid == null) {
+            return -1;
+        }
+        IndexedRun run = scanned(job).runs.get(buildUid);
+        return run == null ? -1 : run.number;
+    }
+
+    public static int size() {
+        int size = 0;
+        for (JobRuns jobRuns : byJob.values()) {
+            size += jobRuns.runs.size();
+        }
+        return size;
+    }
+
+    static void clear() {
+        byJob.clear();
+    }
+
+    private static JobRuns jobRuns(String jobName) {
+        JobRuns jobRuns = byJob.get(jobName);
+        if (jobRuns == null) {
+            JobRuns created = new JobRuns();
+            jobRuns = byJob.putIfAbsent(jobName, created);
+            if (jobRuns == null) {
+                jobRuns = created;
+            }
+        }
+        return jobRuns;
+    }
+
+    private static JobRuns scanned(WorkflowJob job) {
+        JobRuns jobRuns = jobRuns(job.getFullName());
+        if (!jobRuns.scanned) {
+            synchronized (jobRuns) {
+                if (!jobRuns.scanned) {
+                    // runs started while we scan are added by the listener
+                    // into the same map, so none are lost
+                    try {
+                        for (WorkflowRun run : job.getBuilds()) {
+                            BuildCause cause = run.getCause(BuildCause.class);
+                            if (cause != null && cause.getUid() != null && !jobRuns.runs.containsKey(cause.getUid())) {
+                                jobRuns.runs.put(cause.getUid(), new IndexedRun(run.getNumber(), System.currentTimeMillis()));
+                            }
+                        }
+                        jobRuns.scanned = true;
+                    } catch (Throwable t) {
+                        // leave the job unscanned so the next lookup tries
+                        // again
+                        LOGGER.log(Level.WARNING, "Failed to index the runs of job " + job.getFullName(), t);
+                    }
+                }
+            }
+        }
+        return jobRuns;
+    }
+
+    public static class IndexedRun {
+        final int number;
+        final long indexedAt;
+
+        IndexedRun(int number, long indexedAt) {
+            this.number = number;
+            this.indexedAt = indexedAt;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        public long getIndexedAt() {
+            return indexedAt;
+        }
+    }
+
+    private static class JobRuns {
+        final ConcurrentHashMap<String, IndexedRun> runs = new ConcurrentHashMap<String, IndexedRun>();
+        volatile boolean scanned;
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import io.fabric8.openshift.api.model.Build;
+import jenkins.model.Jenkins;
+
+import org.apache.commons.lang.StringUtils;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static io.fabric8.jenkins.openshiftsync.JenkinsUtils.deleteRun;
+
+/**
+ * Deletes the job runs whose OpenShift build no longer exists.
+ *
+ * A pass lists the builds of each namespace once into a set of UIDs and
+ * checks the runs of each synced job against it through the
+ * {@link BuildRunIndex}, so only runs that are deleted get loaded. A pass
+ * stops when its time budget is used up and resumes with the next job on the
+ * next call, so a controller with many jobs spreads the work over several
+ * relist cycles.
+ */
+public class BuildRunReconciler {
+    private static final Logger LOGGER = Logger.getLogger(BuildRunReconciler.class.getName());
+
+    static final long BUDGET_MILLIS = Long.getLong(BuildRunReconciler.class.getName() + ".budgetMillis", 5000L);
+
+    // jobs still to be checked in the current pass
+    private static final Deque<String> pendingJobs = new ArrayDeque<String>();
+    // build UIDs per namespace, listed at most once per pass; a null value
+    // means the list failed and the namespace is skipped for this pass
+    private static final Map<String, Snapshot> snapshots = new HashMap<String, Snapshot>();
+
+    /**
+     * Works through the current pass, starting a new one if the last one
+     * completed, until done or out of time
+     */
+    public static synchronized void reconcile() {
+        long deadline = System.currentTimeMillis() + BUDGET_MILLIS;
+        if (pendingJobs.isEmpty()) {
+            startPass();
+        }
+        int checked = 0;
+        while (!pendingJobs.isEmpty() && System.currentTimeMillis() < deadline) {
+            String jobName = pendingJobs.poll();
+            try {
+                reconcileJob(jobName);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Failed to reconcile the runs of job " + jobName, e);
+            }
+            checked++;
+        }
+        if (pendingJobs.isEmpty()) {
+            LOGGER.fine("Reconciled job runs and builds; " + checked + " jobs checked in the last step");
+        } else {
+            LOGGER.info("Reconciling job runs and builds ran out of time after " + checked + " jobs; " + pendingJobs.size()
+                    + " jobs left for the next relist");
+        }
+    }
+
+    private static void startPass() {
+        LOGGER.info("Reconciling job runs and builds");
+        snapshots.clear();
+        for (WorkflowJob job : Jenkins.getActiveInstance().getAllItems(WorkflowJob.class)) {
+            BuildConfigProjectProperty property = job.getProperty(BuildConfigProjectProperty.class);
+            if (property == null || StringUtils.isBlank(property.getNamespace()) || StringUtils.isBlank(property.getName())) {
+                continue;
+            }
+            pendingJobs.add(job.getFullName());
+        }
+    }
+
+    private static void reconcileJob(String jobName) {
+        WorkflowJob job = Jenkins.getActiveInstance().getItemByFullName(jobName, WorkflowJob.class);
+        if (job == null) {
+            return;
+        }
+        BuildConfigProjectProperty property = job.getProperty(BuildConfigProjectProperty.class);
+        if (property == null || StringUtils.isBlank(property.getNamespace())) {
+            return;
+        }
+        Snapshot snapshot = snapshot(property.getNamespace());
+        if (snapshot == null) {
+            return;
+        }
+        for (Map.Entry<String, BuildRunIndex.IndexedRun> entry : BuildRunIndex.getRuns(job).entrySet()) {
+            String buildUid = entry.getKey();
+            BuildRunIndex.IndexedRun indexed = entry.getValue();
+            // a run indexed after the list may belong to a build the list
+            // did not see yet; leave it to the next pass
+            if (snapshot.buildUids.contains(buildUid) || indexed.getIndexedAt() >= snapshot.listedAt) {
+                continue;
+            }
+            WorkflowRun run = job.getBuildByNumber(indexed.getNumber());
+            if (run == null) {
+                BuildRunIndex.remove(jobName, buildUid);
+                continue;
+            }
+            BuildCause cause = run.getCause(BuildCause.class);
+            if (cause == null || !buildUid.equals(cause.getUid())) {
+                // the index was stale
+                BuildRunIndex.remove(jobName, buildUid);
+                continue;
+            }
+            deleteRun(run);
+        }
+    }
+
+    private static Snapshot snapshot(String namespace) {
+        if (snapshots.containsKey(namespace)) {
+            return snapshots.get(namespace);
+        }
+        Snapshot snapshot = new Snapshot();
+        snapshot.listedAt = System.currentTimeMillis();
+        try {
+            final Set<String> uids = snapshot.buildUids;
+            ResourceLister.list(Build.class, "builds", true, namespace, null, null, new ResourceLister.PageHandler<Build>() {
+                @Override
+                public void onPage(List<Build> items) {
+                    for (Build build : items) {
+                        uids.add(build.getMetadata().getUid());
+                    }
+                }
+            });
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to list the builds of namespace " + namespace + "; not reconciling its job runs", e);
+            snapshot = null;
+        }
+        snapshots.put(namespace, snapshot);
+        return snapshot;
+    }
+
+    private static class Snapshot {
+        final Set<String> buildUids = new HashSet<String>();
+        long listedAt;
+    }
+}
@@ -0,0 +1,364 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import hudson.XmlFile;
+import hudson.triggers.SafeTimerTask;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import jenkins.model.Jenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.net.HttpURLConnection.HTTP_NOT_FOUND;
+import static org.apache.commons.httpclient.HttpStatus.SC_UNPROCESSABLE_ENTITY;
+
+/**
+ * Holds the status updates of builds between the run listener and the API
+ * server. There is at most one pending update per build; a newer update of
+ * the same build is merged into it, its values winning, except that a
+ * pending terminal phase is never replaced by a running one. Updates are sent
+ * through a token bucket per namespace and a global one, updates to a
+ * terminal phase first. Pending terminal updates are saved to disk, so they
+ * are still sent after a restart or an API server outage.
+ */
+public class BuildStatusOutbox {
+    private static final Logger LOGGER = Logger.getLogger(BuildStatusOutbox.class.getName());
+
+    static final long FLUSH_PERIOD_MILLIS = Long.getLong(BuildStatusOutbox.class.getName() + ".flushPeriodMillis", 250L);
+    static final double RATE_PER_SECOND = getDouble(".ratePerSecond", 20);
+    static final double BURST = getDouble(".burst", 40);
+    static final double NAMESPACE_RATE_PER_SECOND = getDouble(".namespaceRatePerSecond", 5);
+    static final double NAMESPACE_BURST = getDouble(".namespaceBurst", 10);
+
+    // namespace/name -> pending update, in the order the builds were queued
+    private static final Map<String, Update> pending = new LinkedHashMap<String, Update>();
+    private static boolean terminalChanged;
+
+    private static final TokenBucket globalBucket = new TokenBucket(RATE_PER_SECOND, BURST);
+    private static final ConcurrentHashMap<String, TokenBucket> namespaceBuckets = new ConcurrentHashMap<String, TokenBucket>();
+
+    private static final AtomicBoolean started = new AtomicBoolean(false);
+    // flushes block on the rate limiter and on API calls, so they get a
+    // thread of their own rather than one of the shared timer threads
+    private static final ScheduledThreadPoolExecutor flusher = new ScheduledThreadPoolExecutor(1,
+            new NamingThreadFactory(new DaemonThreadFactory(), "OpenShift build status outbox"));
+    private static final AtomicLong sent = new AtomicLong();
+    private static final AtomicLong merged = new AtomicLong();
+    private static final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Queues a status update of a build
+     *
+     * @param onGone
+     *            run if the build turns out to be deleted or no longer
+     *            updatable, may be null
+     */
+    public static void offer(String namespace, String name, Map<String, String> annotations, Map<String, Object> status,
+            Runnable onGone) {
+        offer(namespace, name, annotations, status, onGone, null);
+    }
+
+    /**
+     * Queues a status update of a build
+     *
+     * @param onGone
+     *            run if the build turns out to be deleted or no longer
+     *            updatable, may be null
+     * @param onSent
+     *            run once the update, or one it was merged with, was sent,
+     *            may be null
+     */
+    public static void offer(String namespace, String name, Map<String, String> annotations, Map<String, Object> status,
+            Runnable onGone, Runnable onSent) {
+        Update update = new Update(namespace, name, annotations, status, onGone, onSent);
+        synchronized (BuildStatusOutbox.class) {
+            Update old = pending.get(update.key());
+            if (old != null) {
+                update = old.mergedWith(update);
+                merged.incrementAndGet();
+            }
+            pending.put(update.key(), update);
+            if (update.isTerminal()) {
+                terminalChanged = true;
+            }
+        }
+        start();
+    }
+
+    /**
+     * Loads the terminal updates left over from before a restart and starts
+     * sending updates
+     */
+    public static void start() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        load();
+        flusher.scheduleWithFixedDelay(new SafeTimerTask() {
+            @Override
+            protected void doRun() throws Exception {
+                flush();
+            }
+        }, FLUSH_PERIOD_MILLIS, FLUSH_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    static void flush() {
+        if (OpenShiftUtils.getAuthenticatedOpenShiftClient() == null) {
+            // not configured yet; the updates wait for a client
+            return;
+        }
+        for (Update update : ordered()) {
+            TokenBucket namespaceBucket = namespaceBucket(update.namespace);
+            if (!globalBucket.hasToken()) {
+                break;
+            }
+            if (!namespaceBucket.tryAcquire()) {
+                continue;
+            }
+            globalBucket.tryAcquire();
+            boolean done = true;
+            try {
+                BuildPatcher.patch(update.namespace, update.name, update.annotations, update.status);
+                sent.incrementAndGet();
+                if (update.onSent != null) {
+                    update.onSent.run();
+                }
+            } catch (KubernetesClientException e) {
+                if (e.getCode() == HTTP_NOT_FOUND || e.getCode() == SC_UNPROCESSABLE_ENTITY) {
+                    dropped.incrementAndGet();
+                    LOGGER.log(Level.WARNING, "Cannot update status of build " + update.key() + ": {0}", e.getMessage());
+                    if (update.onGone != null) {
+                        update.onGone.run();
+                    }
+                } else if (BuildInstantiator.isRetriable(e)) {
+                    // leave it for the next flush
+                    done = false;
+                    LOGGER.log(Level.FINE, "Failed to update status of build " + update.key() + ", will try again", e);
+                } else {
+                    dropped.incrementAndGet();
+                    LOGGER.log(Level.WARNING, "Failed to update status of build " + update.key(), e);
+                }
+            } catch (RuntimeException e) {
+                // do not let one update stop the others or the save
+                dropped.incrementAndGet();
+                LOGGER.log(Level.WARNING, "Failed to update status of build " + update.key(), e);
+            }
+            if (done) {
+                remove(update);
+            }
+        }
+        saveIfChanged();
+    }
+
+    // terminal updates first, the rest in the order they were queued
+    private static synchronized List<Update> ordered() {
+        List<Update> result = new ArrayList<Update>(pending.size());
+        for (Update update : pending.values()) {
+            if (update.isTerminal()) {
+                result.add(update);
+            }
+        }
+        for (Update update : pending.values()) {
+            if (!update.isTerminal()) {
+                result.add(update);
+            }
+        }
+        return result;
+    }
+
+    private static synchronized void remove(Update update) {
+        // a newer update queued while this one was sent stays pending
+        if (pending.get(update.key()) == update) {
+            pending.remove(update.key());
+            if (update.isTerminal()) {
+                terminalChanged = true;
+            }
+        }
+    }
+
+    private static TokenBucket namespaceBucket(String namespace) {
+        TokenBucket bucket = namespaceBuckets.get(namespace);
+        if (bucket == null) {
+            TokenBucket created = new TokenBucket(NAMESPACE_RATE_PER_SECOND, NAMESPACE_BURST);
+            bucket = namespaceBuckets.putIfAbsent(namespace, created);
+            if (bucket == null) {
+                bucket = created;
+            }
+        }
+        return bucket;
+    }
+
+    private static void saveIfChanged() {
+        List<Update> terminal = new ArrayList<Update>();
+        synchronized (BuildStatusOutbox.class) {
+            if (!terminalChanged) {
+                return;
+            }
+            terminalChanged = false;
+            for (Update update : pending.values()) {
+                if (update.isTerminal()) {
+                    terminal.add(update);
+                }
+            }
+        }
+        XmlFile file = getConfigFile();
+        if (file == null) {
+            return;
+        }
+        try {
+            if (terminal.isEmpty()) {
+                file.delete();
+            } else {
+                file.write(terminal);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to save the pending build status updates", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void load() {
+        XmlFile file = getConfigFile();
+        if (file == null || !file.exists()) {
+            return;
+        }
+        try {
+            List<Update> saved = (List<Update>) file.read();
+            synchronized (BuildStatusOutbox.class) {
+                for (Update update : saved) {
+                    if (!pending.containsKey(update.key())) {
+                        pending.put(update.key(), update);
+                    }
+                }
+            }
+            LOGGER.info("Loaded " + saved.size() + " pending build status updates");
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to load the pending build status updates", e);
+        }
+    }
+
+    private static XmlFile getConfigFile() {
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) {
+            return null;
+        }
+        return new XmlFile(Jenkins.XSTREAM2, new File(jenkins.getRootDir(), BuildStatusOutbox.class.getName() + ".xml"));
+    }
+
+    private static double getDouble(String property, double defaultValue) {
+        String value = System.getProperty(BuildStatusOutbox.class.getName() + property);
+        if (value != null) {
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Ignoring invalid value " + value + " of " + BuildStatusOutbox.class.getName() + property);
+            }
+        }
+        return defaultValue;
+    }
+
+    public static synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    public static long getSentCount() {
+        return sent.get();
+    }
+
+    public static long getMergedCount() {
+        return merged.get();
+    }
+
+    public static long getDroppedCount() {
+        return dropped.get();
+    }
+
+    static synchronized Update getPending(String namespace, String name) {
+        return pending.get(namespace + "/" + name);
+    }
+
+    static synchronized void clear() {
+        pending.clear();
+        terminalChanged = false;
+    }
+
+    static class Update {
+        final String namespace;
+        final String name;
+        final HashMap<String, String> annotations;
+        final HashMap<String, Object> status;
+        final transient Runnable onGone;
+        final transient Runnable onSent;
+
+        Update(String namespace, String name, Map<String, String> annotations, Map<String, Object> status, Runnable onGone) {
+            this(namespace, name, annotations, status, onGone, null);
+        }
+
+        Update(String namespace, String name, Map<String, String> annotations, Map<String, Object> status, Runnable onGone,
+                Runnable onSent) {
+            this.namespace = namespace;
+            this.name = name;
+            this.annotations = annotations == null ? new HashMap<String, String>() : new HashMap<String, String>(annotations);
+            this.status = status == null ? new HashMap<String, Object>() : new HashMap<String, Object>(status);
+            this.onGone = onGone;
+            this.onSent = onSent;
+        }
+
+        String key() {
+            return namespace + "/" + name;
+        }
+
+        boolean isTerminal() {
+            return BuildPhases.isTerminal(status.get("phase"));
+        }
+
+        Update mergedWith(Update newer) {
+            Update result = new Update(namespace, name, annotations, status, newer.onGone != null ? newer.onGone : onGone,
+                    newer.onSent != null ? newer.onSent : onSent);
+            if (isTerminal() && !newer.isTerminal()) {
+                // a poll that raced the completion of the run; what it saw
+                // is older than the terminal status already pending
+                return result;
+            }
+            for (Map.Entry<String, String> annotation : newer.annotations.entrySet()) {
+                if (annotation.getValue() != null) {
+                    result.annotations.put(annotation.getKey(), annotation.getValue());
+                }
+            }
+            for (Map.Entry<String, Object> field : newer.status.entrySet()) {
+                if (field.getValue() != null) {
+                    result.status.put(field.getKey(), field.getValue());
+                }
+            }
+            return result;
+        }
+    }
+}
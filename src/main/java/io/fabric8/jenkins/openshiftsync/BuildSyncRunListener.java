@@ -15,14 +15,11 @@
  */
 package io.fabric8.jenkins.openshiftsync;
 
-import com.cloudbees.workflow.rest.external.AtomFlowNodeExt;
-import com.cloudbees.workflow.rest.external.FlowNodeExt;
 import com.cloudbees.workflow.rest.external.PendingInputActionsExt;
 import com.cloudbees.workflow.rest.external.RunExt;
 import com.cloudbees.workflow.rest.external.StageNodeExt;
 import com.cloudbees.workflow.rest.external.StatusExt;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 import hudson.Extension;
 import hudson.PluginManager;
@@ -31,10 +28,10 @@ import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.model.listeners.RunListener;
 import hudson.triggers.SafeTimerTask;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
 import io.fabric8.kubernetes.client.KubernetesClientException;
 import io.fabric8.openshift.api.model.Build;
-import io.fabric8.openshift.api.model.BuildFluent;
-import io.fabric8.openshift.api.model.DoneableBuild;
 import io.jenkins.blueocean.rest.factory.BlueRunFactory;
 import io.jenkins.blueocean.rest.model.BluePipelineNode;
 import io.jenkins.blueocean.rest.model.BlueRun;
@@ -43,6 +40,10 @@ import jenkins.model.Jenkins;
 import jenkins.util.Timer;
 
 import org.apache.commons.httpclient.HttpStatus;
+import org.eclipse.jetty.util.ConcurrentHashSet;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
+import org.jenkinsci.plugins.workflow.flow.GraphListener;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
 import org.jenkinsci.plugins.workflow.support.steps.input.InputAction;
 import org.jenkinsci.plugins.workflow.support.steps.input.InputStepExecution;
@@ -58,7 +59,12 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
@@ -72,7 +78,6 @@ import static io.fabric8.jenkins.openshiftsync.Constants.OPENSHIFT_ANNOTATIONS_J
 import static io.fabric8.jenkins.openshiftsync.JenkinsUtils.maybeScheduleNext;
 import static io.fabric8.jenkins.openshiftsync.OpenShiftUtils.formatTimestamp;
 import static io.fabric8.jenkins.openshiftsync.OpenShiftUtils.getAuthenticatedOpenShiftClient;
-import static java.net.HttpURLConnection.HTTP_NOT_FOUND;
 import static java.util.logging.Level.FINE;
 import static java.util.logging.Level.SEVERE;
 import static java.util.logging.Level.WARNING;
@@ -90,8 +95,30 @@ public class BuildSyncRunListener extends RunListener<Run> {
     private long pollPeriodMs = 1000 * 5;  // 5 seconds
     private long delayPollPeriodMs = 1000; // 1 seconds
     private static final long maxDelay = 30000;
+    // a run is polled every pollPeriodMs while its flow graph changes; while
+    // it does not, the interval doubles up to this, and a run waiting for
+    // input is polled at this interval straight away. A poll only publishes
+    // the status of a run whose flow graph changed, that waits for input, or
+    // that was last published this long ago, for the durations to advance
+    private static final long fullPollPeriodMs = Long.getLong(
+            BuildSyncRunListener.class.getName() + ".fullPollPeriodMs", 60000L);
+    private static final int pollThreads = Integer.getInteger(
+            BuildSyncRunListener.class.getName() + ".pollThreads", 2);
+    // how often due runs are handed to the poll workers
+    private static final long dispatchPeriodMs = 250;
 
-    private transient ConcurrentLinkedQueue<Run> runsToPoll = new ConcurrentLinkedQueue<>();
+    // runs with flow graph changes not yet published
+    private transient ConcurrentHashSet<Run> dirtyRuns = new ConcurrentHashSet<Run>();
+
+    // polled runs, ordered by when they are next due
+    private transient DelayQueue<PolledRun> pollSchedule = new DelayQueue<PolledRun>();
+
+    private transient ConcurrentHashMap<Run, PolledRun> polledRuns = new ConcurrentHashMap<>();
+
+    private transient ThreadPoolExecutor pollWorkers = newPollWorkers();
+
+    // the status last computed per run, from onStarted to onFinalized
+    private transient ConcurrentHashMap<Run, SyncedGraph> syncedGraphs = new ConcurrentHashMap<>();
 
     private transient AtomicBoolean timerStarted = new AtomicBoolean(false);
 
@@ -128,19 +155,40 @@ public class BuildSyncRunListener extends RunListener<Run> {
                 .replaceAll("/#", "#").replaceAll(":/", "://");
     }
 
+    @Override
+    public void onInitialize(Run run) {
+        // index the run as soon as it exists, so a build event arriving
+        // before the run starts finds it
+        if (shouldPollRun(run)) {
+            BuildRunIndex.add((WorkflowRun) run);
+        }
+        super.onInitialize(run);
+    }
+
     @Override
     public void onStarted(Run run, TaskListener listener) {
         if (shouldPollRun(run)) {
+            BuildRunIndex.add((WorkflowRun) run);
             try {
                 BuildCause cause = (BuildCause) run.getCause(BuildCause.class);
                 if (cause != null) {
+                    // stamped before the description is set, which saves
+                    // the run
+                    cause.setStartedAt(System.currentTimeMillis());
+                    TriggerLatency.started(cause);
                     // TODO This should be a link to the OpenShift console.
                     run.setDescription(cause.getShortDescription());
                 }
             } catch (IOException e) {
                 logger.log(WARNING, "Cannot set build description: " + e);
             }
-            if (runsToPoll.add(run)) {
+            PolledRun polled = new PolledRun(run);
+            if (polledRuns.putIfAbsent(run, polled) == null) {
+                // the flow execution does not exist yet; the first poll
+                // starts listening to it once it does
+                dirtyRuns.add(run);
+                schedule(polled, System.currentTimeMillis()
+                        + delayPollPeriodMs, pollPeriodMs);
                 logger.info("starting polling build " + run.getUrl());
             }
             checkTimerStarted();
@@ -159,15 +207,15 @@ public class BuildSyncRunListener extends RunListener<Run> {
                     pollLoop();
                 }
             };
-            Timer.get().scheduleAtFixedRate(task, delayPollPeriodMs, pollPeriodMs,
-                    TimeUnit.MILLISECONDS);
+            Timer.get().scheduleAtFixedRate(task, dispatchPeriodMs,
+                    dispatchPeriodMs, TimeUnit.MILLISECONDS);
         }
     }
 
     @Override
     public void onCompleted(Run run, @Nonnull TaskListener listener) {
         if (shouldPollRun(run)) {
-            runsToPoll.remove(run);
+            forgetRun(run);
             pollRun(run);
             logger.info("onCompleted " + run.getUrl());
             maybeScheduleNext(((WorkflowRun) run).getParent());
@@ -178,8 +226,10 @@ public class BuildSyncRunListener extends RunListener<Run> {
     @Override
     public void onDeleted(Run run) {
         if (shouldPollRun(run)) {
-            runsToPoll.remove(run);
+            BuildRunIndex.remove((WorkflowRun) run);
+            forgetRun(run);
             pollRun(run);
+            syncedGraphs.remove(run);
             logger.info("onDeleted " + run.getUrl());
             maybeScheduleNext(((WorkflowRun) run).getParent());
         }
@@ -189,26 +239,186 @@ public class BuildSyncRunListener extends RunListener<Run> {
     @Override
     public void onFinalized(Run run) {
         if (shouldPollRun(run)) {
-            runsToPoll.remove(run);
+            forgetRun(run);
             pollRun(run);
+            // the last sync of the run
+            syncedGraphs.remove(run);
             logger.info("onFinalized " + run.getUrl());
         }
         super.onFinalized(run);
     }
 
+    /**
+     * Hands the runs that are due to the poll workers, as long as they have
+     * room for them
+     */
     protected void pollLoop() {
-        Iterator<Run> iter = runsToPoll.iterator();
-        while (iter.hasNext()) {
-            pollRun(iter.next());
+        while (pollWorkers.getQueue().remainingCapacity() > 0) {
+            final PolledRun polled = pollSchedule.poll();
+            if (polled == null) {
+                return;
+            }
+            synchronized (polled) {
+                polled.queued = false;
+            }
+            try {
+                pollWorkers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        poll(polled);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // try again on the next dispatch
+                schedule(polled, System.currentTimeMillis(), polled.interval);
+                return;
+            }
         }
     }
 
+    private void poll(PolledRun polled) {
+        Run run = polled.run;
+        if (polledRuns.get(run) != polled) {
+            return;
+        }
+        listenTo(polled);
+        // clear the flag first so changes made while we poll are picked up
+        // by the next poll
+        boolean changed = dirtyRuns.remove(run);
+        long now = System.currentTimeMillis();
+        StatusExt status = polled.status;
+        boolean heartbeat = now - polled.lastSyncedAt >= fullPollPeriodMs;
+        if (changed || heartbeat || status == null
+                || status == StatusExt.PAUSED_PENDING_INPUT) {
+            try {
+                status = syncRun(run, heartbeat);
+                polled.status = status;
+                polled.lastSyncedAt = now;
+            } catch (Throwable t) {
+                logger.log(WARNING, "Failed to poll build " + run.getUrl(), t);
+            }
+            if (polledRuns.get(run) != polled) {
+                // forgotten while we polled; onFinalized may have evicted
+                // the status before we stored it
+                syncedGraphs.remove(run);
+            }
+        }
+        long interval;
+        if (status == StatusExt.PAUSED_PENDING_INPUT) {
+            interval = fullPollPeriodMs;
+        } else if (changed) {
+            interval = pollPeriodMs;
+        } else {
+            interval = Math.min(polled.interval * 2, fullPollPeriodMs);
+        }
+        synchronized (polled) {
+            polled.lastPolledAt = now;
+            if (polledRuns.get(run) == polled) {
+                schedule(polled, now + interval, interval);
+            }
+        }
+    }
+
+    private void schedule(PolledRun polled, long dueAt, long interval) {
+        synchronized (polled) {
+            polled.dueAt = dueAt;
+            polled.interval = Math.max(1, interval);
+            polled.queued = true;
+            pollSchedule.add(polled);
+        }
+    }
+
+    // brings the next poll of a run that changed forward to pollPeriodMs
+    // after its last poll
+    private void expedite(Run run) {
+        PolledRun polled = polledRuns.get(run);
+        if (polled == null) {
+            return;
+        }
+        synchronized (polled) {
+            long dueAt = Math.max(polled.lastPolledAt + pollPeriodMs,
+                    System.currentTimeMillis());
+            // a run being polled is rescheduled by its worker, which sees it
+            // is dirty
+            if (polled.queued && polled.dueAt > dueAt
+                    && pollSchedule.remove(polled)) {
+                schedule(polled, dueAt, pollPeriodMs);
+            }
+        }
+    }
+
+    // only called by the worker polling the run
+    private void listenTo(PolledRun polled) {
+        if (polled.listening || !(polled.run instanceof WorkflowRun)) {
+            return;
+        }
+        FlowExecution execution = ((WorkflowRun) polled.run).getExecution();
+        if (execution == null) {
+            return;
+        }
+        polled.listening = true;
+        execution.addListener(new DirtyRunMarker(polled));
+        // nodes may have been added before we started listening
+        dirtyRuns.add(polled.run);
+    }
+
+    private void forgetRun(Run run) {
+        PolledRun polled = polledRuns.remove(run);
+        if (polled != null) {
+            synchronized (polled) {
+                if (polled.queued) {
+                    pollSchedule.remove(polled);
+                    polled.queued = false;
+                }
+            }
+        }
+        dirtyRuns.remove(run);
+    }
+
     protected void pollRun(Run run) {
+        syncRun(run, false);
+    }
+
+    /**
+     * Publishes the status of a run
+     *
+     * @return the status of the run
+     */
+    private StatusExt syncRun(Run run, boolean refresh) {
         if (!(run instanceof WorkflowRun)) {
             throw new IllegalStateException("Cannot poll a non-workflow run");
         }
 
-        RunExt wfRunExt = RunExt.create((WorkflowRun) run);
+        try {
+            return upsertBuild(run, refresh);
+        } catch (KubernetesClientException e) {
+            if (e.getCode() == HttpStatus.SC_UNPROCESSABLE_ENTITY) {
+                forgetRun(run);
+                syncedGraphs.remove(run);
+                logger.log(WARNING, "Cannot update status: {0}", e.getMessage());
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * The status of a run computed from its flow graph, reused as long as no
+     * flow node is added to the run
+     *
+     * @param refresh
+     *            whether to compute it anyway, for the durations to advance
+     */
+    private SyncedGraph syncedGraph(WorkflowRun run, String prefix,
+            boolean refresh) {
+        String heads = headsOf(run);
+        SyncedGraph graph = syncedGraphs.get(run);
+        if (!refresh && graph != null && heads != null
+                && heads.equals(graph.heads) && prefix.equals(graph.prefix)) {
+            return graph;
+        }
+
+        RunExt wfRunExt = RunExt.create(run);
 
         // try blue run
         BlueRun blueRun = null;
@@ -222,16 +432,70 @@ public class BuildSyncRunListener extends RunListener<Run> {
             logger.log(Level.WARNING, "pollRun", t);
         }
 
-        try {
-            upsertBuild(run, wfRunExt, blueRun);
-        } catch (KubernetesClientException e) {
-            if (e.getCode() == HttpStatus.SC_UNPROCESSABLE_ENTITY) {
-                runsToPoll.remove(run);
-                logger.log(WARNING, "Cannot update status: {0}", e.getMessage());
-                return;
+        Map<String, BlueRunResult> blueRunResults = new HashMap<String, BlueRunResult>();
+        if (blueRun != null && blueRun.getNodes() != null) {
+            Iterator<BluePipelineNode> iter = blueRun.getNodes().iterator();
+            while (iter.hasNext()) {
+                BluePipelineNode node = iter.next();
+                if (node != null) {
+                    blueRunResults.put(node.getDisplayName(), node.getResult());
+                }
             }
-            throw e;
         }
+        boolean pendingInput = false;
+        int newNumStages = wfRunExt.getStages().size();
+        int newNumFlowNodes = 0;
+        List<StageNodeExt> validStageList = new ArrayList<StageNodeExt>();
+        for (StageNodeExt stage : wfRunExt.getStages()) {
+            // the StatusExt.getStatus() cannot be trusted for declarative
+            // pipeline;
+            // for example, skipped steps/stages will be marked as complete;
+            // we leverage the blue ocean state machine to determine this
+            BlueRunResult result = blueRunResults.get(stage.getName());
+            if (result != null && result == BlueRunResult.NOT_BUILT) {
+                logger.info("skipping stage "
+                        + stage.getName()
+                        + " for the status JSON for pipeline run "
+                        + run.getDisplayName()
+                        + " because it was not executed (most likely because of a failure in another stage)");
+                continue;
+            }
+            validStageList.add(stage);
+
+            newNumFlowNodes = newNumFlowNodes
+                    + stage.getStageFlowNodes().size();
+
+            StatusExt status = stage.getStatus();
+            if (status != null && status.equals(StatusExt.PAUSED_PENDING_INPUT)) {
+                pendingInput = true;
+            }
+        }
+        // override stages in case declarative has fooled base pipeline support
+        wfRunExt.setStages(validStageList);
+
+        graph = new SyncedGraph(heads, prefix, wfRunExt, newNumStages,
+                newNumFlowNodes, pendingInput);
+        if (heads != null) {
+            syncedGraphs.put(run, graph);
+        } else {
+            syncedGraphs.remove(run);
+        }
+        return graph;
+    }
+
+    // identifies the state of the flow graph of a run: its heads change
+    // whenever a flow node is added
+    private static String headsOf(WorkflowRun run) {
+        FlowExecution execution = run.getExecution();
+        if (execution == null) {
+            return null;
+        }
+        StringBuilder heads = new StringBuilder();
+        for (FlowNode head : execution.getCurrentHeads()) {
+            heads.append(head.getId()).append(' ');
+        }
+        return heads.append(run.isBuilding()).append(' ')
+                .append(run.getResult()).toString();
     }
 
     private boolean shouldUpdateOpenShiftBuild(BuildCause cause,
@@ -271,14 +535,19 @@ public class BuildSyncRunListener extends RunListener<Run> {
         return false;
     }
 
-    private void upsertBuild(Run run, RunExt wfRunExt, BlueRun blueRun) {
+    /**
+     * Queues an update of the build of a run with its status
+     *
+     * @return the status of the run, null if it has no build
+     */
+    private StatusExt upsertBuild(Run run, boolean refresh) {
         if (run == null) {
-            return;
+            return null;
         }
 
         BuildCause cause = (BuildCause) run.getCause(BuildCause.class);
         if (cause == null) {
-            return;
+            return null;
         }
 
         String namespace = OpenShiftUtils.getNamespacefromPodInputs();
@@ -331,87 +600,26 @@ public class BuildSyncRunListener extends RunListener<Run> {
                 logger.log(Level.FINE, "upsertBuild", t);
         }
 
-        Map<String, BlueRunResult> blueRunResults = new HashMap<String, BlueRunResult>();
-        if (blueRun != null && blueRun.getNodes() != null) {
-            Iterator<BluePipelineNode> iter = blueRun.getNodes().iterator();
-            while (iter.hasNext()) {
-                BluePipelineNode node = iter.next();
-                if (node != null) {
-                    blueRunResults.put(node.getDisplayName(), node.getResult());
-                }
-            }
-        }
-        boolean pendingInput = false;
-        if (!wfRunExt.get_links().self.href.matches("^https?://.*$")) {
-            wfRunExt.get_links().self.setHref(joinPaths(rootUrl,
-                    wfRunExt.get_links().self.href));
-        }
-        int newNumStages = wfRunExt.getStages().size();
-        int newNumFlowNodes = 0;
-        List<StageNodeExt> validStageList = new ArrayList<StageNodeExt>();
-        for (StageNodeExt stage : wfRunExt.getStages()) {
-            // the StatusExt.getStatus() cannot be trusted for declarative
-            // pipeline;
-            // for example, skipped steps/stages will be marked as complete;
-            // we leverage the blue ocean state machine to determine this
-            BlueRunResult result = blueRunResults.get(stage.getName());
-            if (result != null && result == BlueRunResult.NOT_BUILT) {
-                logger.info("skipping stage "
-                        + stage.getName()
-                        + " for the status JSON for pipeline run "
-                        + run.getDisplayName()
-                        + " because it was not executed (most likely because of a failure in another stage)");
-                continue;
-            }
-            validStageList.add(stage);
-
-            FlowNodeExt.FlowNodeLinks links = stage.get_links();
-            if (!links.self.href.matches("^https?://.*$")) {
-                links.self.setHref(joinPaths(rootUrl, links.self.href));
-            }
-            if (links.getLog() != null
-                    && !links.getLog().href.matches("^https?://.*$")) {
-                links.getLog().setHref(joinPaths(rootUrl, links.getLog().href));
-            }
-            newNumFlowNodes = newNumFlowNodes
-                    + stage.getStageFlowNodes().size();
-            for (AtomFlowNodeExt node : stage.getStageFlowNodes()) {
-                FlowNodeExt.FlowNodeLinks nodeLinks = node.get_links();
-                if (!nodeLinks.self.href.matches("^https?://.*$")) {
-                    nodeLinks.self.setHref(joinPaths(rootUrl,
-                            nodeLinks.self.href));
-                }
-                if (nodeLinks.getLog() != null
-                        && !nodeLinks.getLog().href.matches("^https?://.*$")) {
-                    nodeLinks.getLog().setHref(
-                            joinPaths(rootUrl, nodeLinks.getLog().href));
-                }
-            }
-
-            StatusExt status = stage.getStatus();
-            if (status != null && status.equals(StatusExt.PAUSED_PENDING_INPUT)) {
-                pendingInput = true;
-            }
-        }
-        // override stages in case declarative has fooled base pipeline support
-        wfRunExt.setStages(validStageList);
+        SyncedGraph graph = syncedGraph((WorkflowRun) run,
+                StatusJsonWriter.urlPrefix(rootUrl), refresh);
+        StatusExt runStatus = graph.runExt.getStatus();
 
         boolean needToUpdate = this.shouldUpdateOpenShiftBuild(cause,
-                newNumStages, newNumFlowNodes, wfRunExt.getStatus());
+                graph.numStages, graph.numFlowNodes, runStatus);
         if (!needToUpdate) {
-            return;
+            return runStatus;
         }
 
         String json;
         try {
-            json = new ObjectMapper().writeValueAsString(wfRunExt);
+            json = graph.json();
         } catch (JsonProcessingException e) {
             logger.log(SEVERE, "Failed to serialize workflow run. " + e, e);
-            return;
+            return runStatus;
         }
 
         String pendingActionsJson = null;
-        if (pendingInput && run instanceof WorkflowRun) {
+        if (graph.pendingInput && run instanceof WorkflowRun) {
             pendingActionsJson = getPendingActionsJson((WorkflowRun) run);
         }
 
@@ -429,54 +637,59 @@ public class BuildSyncRunListener extends RunListener<Run> {
             }
         }
 
-        logger.log(FINE, "Patching build {0}/{1}: setting phase to {2}",
+        logger.log(FINE, "Queueing update of build {0}/{1}: setting phase to {2}",
                 new Object[] { cause.getNamespace(), cause.getName(), phase });
-        try {
-            BuildFluent.MetadataNested<DoneableBuild> builder = getAuthenticatedOpenShiftClient()
-                    .builds()
-                    .inNamespace(cause.getNamespace())
-                    .withName(cause.getName())
-                    .edit()
-                    .editMetadata()
-                    .addToAnnotations(
-                            OPENSHIFT_ANNOTATIONS_JENKINS_STATUS_JSON, json)
-                    .addToAnnotations(OPENSHIFT_ANNOTATIONS_JENKINS_BUILD_URI,
-                            buildUrl)
-                    .addToAnnotations(OPENSHIFT_ANNOTATIONS_JENKINS_LOG_URL,
-                            logsUrl)
-                    .addToAnnotations(
-                            Constants.OPENSHIFT_ANNOTATIONS_JENKINS_CONSOLE_LOG_URL,
-                            logsConsoleUrl)
-                    .addToAnnotations(
-                            Constants.OPENSHIFT_ANNOTATIONS_JENKINS_BLUEOCEAN_LOG_URL,
-                            logsBlueOceanUrl);
-
-            String jenkinsNamespace = System.getenv("KUBERNETES_NAMESPACE");
-            if (jenkinsNamespace != null && !jenkinsNamespace.isEmpty()) {
-                builder.addToAnnotations(
-                        OPENSHIFT_ANNOTATIONS_JENKINS_NAMESPACE,
-                        jenkinsNamespace);
-            }
-            if (pendingActionsJson != null && !pendingActionsJson.isEmpty()) {
-                builder.addToAnnotations(
-                        OPENSHIFT_ANNOTATIONS_JENKINS_PENDING_INPUT_ACTION_JSON,
-                        pendingActionsJson);
-            }
-            builder.endMetadata().editStatus().withPhase(phase)
-                    .withStartTimestamp(startTime)
-                    .withCompletionTimestamp(completionTime).endStatus().done();
-        } catch (KubernetesClientException e) {
-            if (HTTP_NOT_FOUND == e.getCode()) {
-                runsToPoll.remove(run);
-            } else {
-                throw e;
-            }
+        Map<String, String> annotations = new HashMap<String, String>();
+        annotations.put(OPENSHIFT_ANNOTATIONS_JENKINS_STATUS_JSON, json);
+        annotations.put(OPENSHIFT_ANNOTATIONS_JENKINS_BUILD_URI, buildUrl);
+        annotations.put(OPENSHIFT_ANNOTATIONS_JENKINS_LOG_URL, logsUrl);
+        annotations.put(Constants.OPENSHIFT_ANNOTATIONS_JENKINS_CONSOLE_LOG_URL,
+                logsConsoleUrl);
+        annotations.put(
+                Constants.OPENSHIFT_ANNOTATIONS_JENKINS_BLUEOCEAN_LOG_URL,
+                logsBlueOceanUrl);
+        String jenkinsNamespace = System.getenv("KUBERNETES_NAMESPACE");
+        if (jenkinsNamespace != null && !jenkinsNamespace.isEmpty()) {
+            annotations.put(OPENSHIFT_ANNOTATIONS_JENKINS_NAMESPACE,
+                    jenkinsNamespace);
         }
+        if (pendingActionsJson != null && !pendingActionsJson.isEmpty()) {
+            annotations.put(
+                    OPENSHIFT_ANNOTATIONS_JENKINS_PENDING_INPUT_ACTION_JSON,
+                    pendingActionsJson);
+        }
+        Map<String, Object> status = new HashMap<String, Object>();
+        status.put("phase", phase);
+        status.put("startTimestamp", startTime);
+        status.put("completionTimestamp", completionTime);
+        final Run gone = run;
+        Runnable onSent = null;
+        if (cause.getFirstStatusUpdateAt() == 0) {
+            final BuildCause traced = cause;
+            onSent = new Runnable() {
+                @Override
+                public void run() {
+                    if (traced.getFirstStatusUpdateAt() == 0) {
+                        traced.setFirstStatusUpdateAt(System.currentTimeMillis());
+                        TriggerLatency.statusUpdated(traced);
+                    }
+                }
+            };
+        }
+        BuildStatusOutbox.offer(cause.getNamespace(), cause.getName(),
+                annotations, status, new Runnable() {
+                    @Override
+                    public void run() {
+                        forgetRun(gone);
+                        syncedGraphs.remove(gone);
+                    }
+                }, onSent);
 
-        cause.setNumFlowNodes(newNumFlowNodes);
-        cause.setNumStages(newNumStages);
+        cause.setNumFlowNodes(graph.numFlowNodes);
+        cause.setNumStages(graph.numStages);
         cause.setLastUpdateToOpenshift(TimeUnit.NANOSECONDS.toMillis(System
                 .nanoTime()));
+        return runStatus;
     }
 
     // annotate the Build with pending input JSON so consoles can do the
@@ -495,7 +708,7 @@ public class BuildSyncRunListener extends RunListener<Run> {
             }
         }
         try {
-            return new ObjectMapper().writeValueAsString(pendingInputActions);
+            return StatusJsonWriter.toJson(pendingInputActions);
         } catch (JsonProcessingException e) {
             logger.log(SEVERE, "Failed to serialize pending actions. " + e, e);
             return null;
@@ -546,4 +759,105 @@ public class BuildSyncRunListener extends RunListener<Run> {
                 && run.getCause(BuildCause.class) != null
                 && GlobalPluginConfiguration.get().isEnabled();
     }
+
+    /**
+     * Marks a run as needing its status published whenever a flow node is
+     * added to it, which is also how steps and stages report they finished.
+     * Called on the pipeline's own thread, so it does no more than that.
+     * There is one per polled run; it stays on the flow execution, which
+     * goes away with the run, but does nothing once the run is no longer
+     * polled.
+     */
+    private class DirtyRunMarker implements GraphListener {
+        private final PolledRun polled;
+
+        DirtyRunMarker(PolledRun polled) {
+            this.polled = polled;
+        }
+
+        @Override
+        public void onNewHead(FlowNode node) {
+            if (polledRuns.get(polled.run) == polled) {
+                dirtyRuns.add(polled.run);
+                expedite(polled.run);
+            }
+        }
+    }
+
+    private static ThreadPoolExecutor newPollWorkers() {
+        int threads = Math.max(1, pollThreads);
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(threads, threads,
+                60L, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(
+                        threads), new NamingThreadFactory(
+                        new DaemonThreadFactory(), "OpenShift build status poller"));
+        workers.allowCoreThreadTimeOut(true);
+        return workers;
+    }
+
+    /**
+     * A polled run with when it is next due
+     */
+    private static class PolledRun implements Delayed {
+        final Run run;
+        // guarded by this
+        long dueAt;
+        long interval;
+        long lastPolledAt;
+        // whether it is in the poll schedule
+        boolean queued;
+        // only used by the worker polling the run: whether its flow
+        // execution is listened to, and its status when last published
+        boolean listening;
+        StatusExt status;
+        long lastSyncedAt;
+
+        PolledRun(Run run) {
+            this.run = run;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueAt - System.currentTimeMillis(),
+                    TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueAt, ((PolledRun) other).dueAt);
+        }
+    }
+
+    /**
+     * The status of a run as computed from its flow graph in a walk of the
+     * whole graph, with the stages Blue Ocean did not run left out
+     */
+    private static class SyncedGraph {
+        // the flow graph state and link prefix it was computed for
+        final String heads;
+        final String prefix;
+        final RunExt runExt;
+        final int numStages;
+        final int numFlowNodes;
+        final boolean pendingInput;
+        // guarded by this
+        private String json;
+
+        SyncedGraph(String heads, String prefix, RunExt runExt, int numStages,
+                int numFlowNodes, boolean pendingInput) {
+            this.heads = heads;
+            this.prefix = prefix;
+            this.runExt = runExt;
+            this.numStages = numStages;
+            this.numFlowNodes = numFlowNodes;
+            this.pendingInput = pendingInput;
+        }
+
+        synchronized String json() throws JsonProcessingException {
+            if (json == null) {
+                StatusJsonWriter.absolutizeLinks(runExt, prefix);
+                json = StatusJsonWriter.toJson(runExt);
+            }
+            return json;
+        }
+    }
 }
@@ -24,22 +24,18 @@ import io.fabric8.openshift.api.model.Build;
 import io.fabric8.openshift.api.model.BuildConfig;
 import io.fabric8.openshift.api.model.BuildList;
 import io.fabric8.openshift.api.model.BuildStatus;
-import jenkins.model.Jenkins;
 import jenkins.security.NotReallyRoleSensitiveCallable;
 
 import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.plugins.workflow.job.WorkflowJob;
-import org.jenkinsci.plugins.workflow.job.WorkflowRun;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -76,7 +72,11 @@ public class BuildWatcher extends BaseWatcher {
     // started seeing duplicate builds getting kicked off so quit depending on
     // so moved off of concurrent hash set to concurrent hash map using 
     // namepace/name key
-    private static final ConcurrentHashMap<String,Build> buildsWithNoBCList = new ConcurrentHashMap<String,Build>();
+
+    // mirrors the relist, which only asks for builds in the New phase; the
+    // watch sees every build, but only those still waiting to be triggered
+    // are kept
+    private static final ResourceCache<Build> newBuildCache = new ResourceCache<Build>();
 
     @SuppressFBWarnings("EI_EXPOSE_REP2")
     public BuildWatcher(String[] namespaces) {
@@ -102,15 +102,23 @@ public class BuildWatcher extends BaseWatcher {
                 // can create job runs for premature builds we already know
                 // about
                 BuildWatcher.flushBuildsWithNoBCList();
-                for (String namespace : namespaces) {
-                    BuildList newBuilds = null;
+                for (String namespace : getWatchScopes()) {
+                    if (watches.get(namespace) != null && newBuildCache.hasSynced(namespacesOf(namespace))) {
+                        // the watch is live so the cache is current; resync
+                        // from it rather than listing from the API server
+                        onInitialBuilds(newBuildCache.list(namespacesOf(namespace)));
+                        continue;
+                    }
+                    String listResourceVersion = null;
                     try {
                         logger.fine("listing Build resources");
-                        newBuilds = getAuthenticatedOpenShiftClient()
-                                .builds()
-                                .inNamespace(namespace)
-                                .withField(OPENSHIFT_BUILD_STATUS_FIELD,
-                                        BuildPhases.NEW).list();
+                        // the builds are sorted and grouped by BuildConfig,
+                        // so every page is needed before handling them
+                        List<Build> newBuilds = new ArrayList<Build>();
+                        listResourceVersion = ResourceLister.listAll(Build.class, "builds", true, listNamespace(namespace), null,
+                                Collections.singletonMap(OPENSHIFT_BUILD_STATUS_FIELD, BuildPhases.NEW), newBuilds);
+                        newBuilds = inWatchedNamespaces(newBuilds);
+                        newBuildCache.replace(namespacesOf(namespace), newBuilds);
                         onInitialBuilds(newBuilds);
                         logger.fine("handled Build resources");
                     } catch (Exception e) {
@@ -119,11 +127,10 @@ public class BuildWatcher extends BaseWatcher {
                     }
                     try {
                         String resourceVersion = "0";
-                        if (newBuilds == null) {
+                        if (listResourceVersion == null) {
                             logger.warning("Unable to get build list; impacts resource version used for watch");
                         } else {
-                            resourceVersion = newBuilds.getMetadata()
-                                    .getResourceVersion();
+                            resourceVersion = listResourceVersion;
                         }
                         if (watches.get(namespace) == null) {
                             logger.info("creating Build watch for namespace "
@@ -131,21 +138,31 @@ public class BuildWatcher extends BaseWatcher {
                                     + " and resource version "
                                     + resourceVersion);
 
-                            addWatch(namespace, getAuthenticatedOpenShiftClient()
-                              .builds()
-                              .inNamespace(namespace)
-                              .withResourceVersion(
-                                resourceVersion)
-                              .watch(new WatcherCallback<Build>(
+                            WatcherCallback<Build> callback = new WatcherCallback<Build>(
                                 BuildWatcher.this,
-                                namespace)));
+                                namespace);
+                            if (ALL_NAMESPACES.equals(namespace)) {
+                                addWatch(namespace, getAuthenticatedOpenShiftClient()
+                                  .builds()
+                                  .inAnyNamespace()
+                                  .withResourceVersion(
+                                    resourceVersion)
+                                  .watch(callback));
+                            } else {
+                                addWatch(namespace, getAuthenticatedOpenShiftClient()
+                                  .builds()
+                                  .inNamespace(namespace)
+                                  .withResourceVersion(
+                                    resourceVersion)
+                                  .watch(callback));
+                            }
                         }
                     } catch (Exception e) {
                         logger.log(Level.SEVERE,
                                 "Failed to load initial Builds: " + e, e);
                     }
                 }
-                reconcileRunsAndBuilds();
+                BuildRunReconciler.reconcile();
             }
         };
     }
@@ -184,13 +201,26 @@ public class BuildWatcher extends BaseWatcher {
     @Override
     public <T> void eventReceived(io.fabric8.kubernetes.client.Watcher.Action action, T resource) {
         Build build = (Build)resource;
+        if (action != Action.DELETED && OpenShiftUtils.isPipelineStrategyBuild(build) && build.getStatus() != null && isNew(build.getStatus())) {
+            newBuildCache.onEvent(action, build);
+        } else {
+            newBuildCache.remove(build);
+        }
         eventReceived(action, build);
     }
 
+    @Override
+    public ResourceCache<Build> getCache() {
+        return newBuildCache;
+    }
+
     public static void onInitialBuilds(BuildList buildList) {
         if (buildList == null)
             return;
-        List<Build> items = buildList.getItems();
+        onInitialBuilds(buildList.getItems());
+    }
+
+    public static void onInitialBuilds(List<Build> items) {
         if (items != null) {
 
             Collections.sort(items, new Comparator<Build>() {
@@ -253,12 +283,10 @@ public class BuildWatcher extends BaseWatcher {
                 String bcMapKey = namespace + "/" + buildConfigName;
                 BuildConfig bc = buildConfigMap.get(bcMapKey);
                 if (bc == null) {
-                    bc = getAuthenticatedOpenShiftClient().buildConfigs()
-                            .inNamespace(namespace).withName(buildConfigName)
-                            .get();
+                    bc = BuildConfigWatcher.getBuildConfig(namespace, buildConfigName);
                     if (bc == null) {
-                        // if the bc is not there via a REST get, then it is not
-                        // going to be, and we are not handling manual creation
+                        // if the bc is not in the cache or there via a REST get,
+                        // then it is not going to be, and we are not handling manual creation
                         // of pipeline build objects, so don't bother with "no bc list"
                         continue;
                     }
@@ -318,9 +346,10 @@ public class BuildWatcher extends BaseWatcher {
             } else {
                 removeBuildFromNoBCList(build);
             }
-        } else {
-            // see if any pre-BC cached builds can now be flushed
-            flushBuildsWithNoBCList();
+        } else if (status != null && !isNew(status)) {
+            // a parked build that moved on without us is no longer a
+            // candidate for a job run
+            removeBuildFromNoBCList(build);
         }
     }
 
@@ -354,59 +383,40 @@ public class BuildWatcher extends BaseWatcher {
         // should have been caught upstack, but just in case since public method
         if (!OpenShiftUtils.isPipelineStrategyBuild(build))
             return;
-        try {
-          buildsWithNoBCList.put(build.getMetadata().getNamespace()+build.getMetadata().getName(), build);
-        } catch (ConcurrentModificationException | IllegalArgumentException |
-          UnsupportedOperationException | NullPointerException e) {
-          logger.log(Level.WARNING,"Failed to add item " +
-            build.getMetadata().getName(), e);
+        if (!ParkedBuilds.park(build)) {
+            logger.fine("build " + build.getMetadata().getName() + " names no build config, not waiting for its job");
         }
     }
 
     private static void removeBuildFromNoBCList(Build build) {
-          buildsWithNoBCList.remove(build.getMetadata().getNamespace()+build.getMetadata().getName());
+        ParkedBuilds.remove(build);
     }
 
     // trigger any builds whose watch events arrived before the
-    // corresponding build config watch events
+    // corresponding build config watch events; only needs to run
+    // periodically, as the build config event that maps a job releases
+    // that build config's builds directly
     public static void flushBuildsWithNoBCList() {
-        
-        ConcurrentHashMap<String,Build> clone = null;
-        synchronized(buildsWithNoBCList) {
-            clone = new ConcurrentHashMap<String,Build>(buildsWithNoBCList);
+        ParkedBuilds.evictExpired();
+        for (String key : ParkedBuilds.getParkedBuildConfigs()) {
+            int slash = key.indexOf('/');
+            flushBuildsWithNoBCList(key.substring(0, slash), key.substring(slash + 1));
         }
-        boolean anyRemoveFailures = false;
-        for (Build build : clone.values()) {
-            WorkflowJob job = getJobFromBuild(build);
-            if (job != null) {
-                try {
-                    logger.info("triggering job run for previously skipped build " + build.getMetadata().getName());
-                    triggerJob(job, build);
-                } catch (IOException e) {
-                    logger.log(Level.WARNING, "flushBuildsWithNoBCList", e);
-                }
-                try {
-                    synchronized(buildsWithNoBCList) {
-                        removeBuildFromNoBCList(build);
-                    }
-                } catch (Throwable t) {
-                    // TODO
-                    // concurrent mod exceptions are not suppose to occur
-                    // with concurrent hash set; this try/catch with log
-                    // and the anyRemoveFailures post processing is a bit
-                    // of safety paranoia until this proves to be true
-                    // over extended usage ... probably can remove at some
-                    // point
-                    anyRemoveFailures = true;
-                    logger.log(Level.WARNING, "flushBuildsWithNoBCList", t);
-                }
-            }
-            
-            synchronized(buildsWithNoBCList) {
-                if (anyRemoveFailures && buildsWithNoBCList.size() > 0) {
-                    buildsWithNoBCList.clear();
-                }            
-                
+    }
+
+    // trigger the builds of one build config that arrived before its job
+    // was mapped
+    public static void flushBuildsWithNoBCList(String namespace, String buildConfigName) {
+        WorkflowJob job = getJobFromBuildConfigNameNamespace(buildConfigName, namespace);
+        if (job == null) {
+            return;
+        }
+        for (Build build : ParkedBuilds.release(namespace, buildConfigName)) {
+            try {
+                logger.info("triggering job run for previously skipped build " + build.getMetadata().getName());
+                triggerJob(job, build);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "flushBuildsWithNoBCList", e);
             }
         }
     }
@@ -451,10 +461,9 @@ public class BuildWatcher extends BaseWatcher {
         for (OwnerReference ref : ownerRefs) {
             if ("BuildConfig".equals(ref.getKind()) && ref.getUid() != null
                     && ref.getUid().length() > 0) {
-                // employ intern to facilitate sync'ing on the same actual
-                // object
-                bcUid = ref.getUid().intern();
-                synchronized (bcUid) {
+                bcUid = ref.getUid();
+                UidLocks.lock(bcUid);
+                try {
                     // if entire job already deleted via bc delete, just return
                     if (getJobFromBuildConfigNameNamespace(getAnnotation(build, BUILDCONFIG_NAME),
                             build.getMetadata().getNamespace()) == null) {
@@ -462,6 +471,8 @@ public class BuildWatcher extends BaseWatcher {
                     }
                     innerDeleteEventToJenkinsJobRun(build);
                     return;
+                } finally {
+                    UidLocks.unlock(bcUid);
                 }
             }
         }
@@ -470,41 +481,4 @@ public class BuildWatcher extends BaseWatcher {
         innerDeleteEventToJenkinsJobRun(build);
     }
 
-  /**
-   * Reconciles Jenkins job runs and OpenShift builds
-   *
-   * Deletes all job runs that do not have an associated build in OpenShift
-   */
-  private static void reconcileRunsAndBuilds() {
-    logger.info("Reconciling job runs and builds");
-
-    List<WorkflowJob> jobs = Jenkins.getActiveInstance().getAllItems(WorkflowJob.class);
-
-    for (WorkflowJob job : jobs) {
-      BuildConfigProjectProperty property = job.getProperty(BuildConfigProjectProperty.class);
-      if (property == null || StringUtils.isBlank(property.getNamespace()) || StringUtils.isBlank(property.getName())) {
-        continue;
-      }
-
-      logger.info("Checking job " + job.toString() + " runs for BuildConfig " + property.getNamespace() + "/" + property.getName());
-
-      BuildList buildList = getAuthenticatedOpenShiftClient().builds()
-        .inNamespace(property.getNamespace()).withLabel("buildconfig=" + property.getName()).list();
-
-      for (WorkflowRun run : job.getBuilds()) {
-        boolean found = false;
-        BuildCause cause = run.getCause(BuildCause.class);
-        for (Build build : buildList.getItems()) {
-          if (cause != null && cause.getUid().equals(build.getMetadata().getUid())) {
-            found = true;
-            break;
-          }
-        }
-        if (!found) {
-          deleteRun(run);
-        }
-      }
-    }
-  }
-
 }
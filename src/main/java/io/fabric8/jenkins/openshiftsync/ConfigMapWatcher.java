@@ -21,7 +21,6 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.triggers.SafeTimerTask;
 import hudson.util.XStream2;
 import io.fabric8.kubernetes.api.model.ConfigMap;
-import io.fabric8.kubernetes.api.model.ConfigMapList;
 import io.fabric8.kubernetes.client.Watcher.Action;
 import io.fabric8.openshift.api.model.ImageStreamTag;
 
@@ -43,6 +42,8 @@ import static java.util.logging.Level.WARNING;
 public class ConfigMapWatcher extends BaseWatcher {
     private final Logger logger = Logger.getLogger(getClass().getName());
 
+    private static final ResourceCache<ConfigMap> configMapCache = new ResourceCache<ConfigMap>();
+
     @SuppressFBWarnings("EI_EXPOSE_REP2")
     public ConfigMapWatcher(String[] namespaces) {
         super(namespaces);
@@ -61,37 +62,62 @@ public class ConfigMapWatcher extends BaseWatcher {
                     logger.fine("No Openshift Token credential defined.");
                     return;
                 }
-                for (String namespace : namespaces) {
-                    ConfigMapList configMaps = null;
+                for (String namespace : getWatchScopes()) {
+                    if (watches.get(namespace) != null && configMapCache.hasSynced(namespacesOf(namespace))) {
+                        // the watch is live so the cache is current; resync
+                        // from it rather than listing from the API server
+                        onInitialConfigMaps(configMapCache.list(namespacesOf(namespace)));
+                        continue;
+                    }
+                    String listResourceVersion = null;
                     try {
                         logger.fine("listing ConfigMap resources");
-                        configMaps = getAuthenticatedOpenShiftClient()
-                                .configMaps().inNamespace(namespace).list();
-                        onInitialConfigMaps(configMaps);
+                        configMapCache.beginReplace(namespacesOf(namespace));
+                        listResourceVersion = ResourceLister.list(ConfigMap.class, "configmaps", false, listNamespace(namespace), SLAVE_LABEL_SELECTOR, null, new ResourceLister.PageHandler<ConfigMap>() {
+                                    @Override
+                                    public void onPage(List<ConfigMap> items) {
+                                        List<ConfigMap> watched = inWatchedNamespaces(items);
+                                        configMapCache.addPage(watched);
+                                        onInitialConfigMaps(watched);
+                                    }
+                                });
+                        configMapCache.endReplace(namespacesOf(namespace));
                         logger.fine("handled ConfigMap resources");
                     } catch (Exception e) {
                         logger.log(SEVERE, "Failed to load ConfigMaps: " + e, e);
                     }
                     try {
                         String resourceVersion = "0";
-                        if (configMaps == null) {
+                        if (listResourceVersion == null) {
                             logger.warning("Unable to get config map list; impacts resource version used for watch");
                         } else {
-                            resourceVersion = configMaps.getMetadata()
-                                    .getResourceVersion();
+                            resourceVersion = listResourceVersion;
                         }
                         if (watches.get(namespace) == null) {
                             logger.info("creating ConfigMap watch for namespace "
                                     + namespace
                                     + " and resource version "
                                     + resourceVersion);
-                            addWatch(namespace,
-                                    getAuthenticatedOpenShiftClient()
-                                    .configMaps()
-                                    .inNamespace(namespace)
-                                    .withResourceVersion(
-                                            resourceVersion)
-                                            .watch(new WatcherCallback<ConfigMap>(ConfigMapWatcher.this,namespace)));
+                            WatcherCallback<ConfigMap> callback = new WatcherCallback<ConfigMap>(ConfigMapWatcher.this, namespace);
+                            if (ALL_NAMESPACES.equals(namespace)) {
+                                addWatch(namespace,
+                                        getAuthenticatedOpenShiftClient()
+                                        .configMaps()
+                                        .inAnyNamespace()
+                                        .withLabels(SLAVE_LABEL_SELECTOR)
+                                        .withResourceVersion(
+                                                resourceVersion)
+                                                .watch(callback));
+                            } else {
+                                addWatch(namespace,
+                                        getAuthenticatedOpenShiftClient()
+                                        .configMaps()
+                                        .inNamespace(namespace)
+                                        .withLabels(SLAVE_LABEL_SELECTOR)
+                                        .withResourceVersion(
+                                                resourceVersion)
+                                                .watch(callback));
+                            }
                         }
                     } catch (Exception e) {
                         logger.log(SEVERE, "Failed to load ConfigMaps: " + e, e);
@@ -144,34 +170,36 @@ public class ConfigMapWatcher extends BaseWatcher {
     @Override
     public <T> void eventReceived(io.fabric8.kubernetes.client.Watcher.Action action, T resource) {
         ConfigMap cfgmap = (ConfigMap)resource;
+        configMapCache.onEvent(action, cfgmap);
         eventReceived(action, cfgmap);
     }
 
-    private void onInitialConfigMaps(ConfigMapList configMaps) {
-        if (configMaps == null)
+    @Override
+    public ResourceCache<ConfigMap> getCache() {
+        return configMapCache;
+    }
+
+    private void onInitialConfigMaps(List<ConfigMap> items) {
+        if (items == null)
             return;
         if (trackedPodTemplates == null) {
-            trackedPodTemplates = new ConcurrentHashMap<>(configMaps.getItems()
-                    .size());
+            trackedPodTemplates = new ConcurrentHashMap<>(items.size());
         }
-        List<ConfigMap> items = configMaps.getItems();
-        if (items != null) {
-            for (ConfigMap configMap : items) {
-                try {
-                    if (containsSlave(configMap)
-                            && !trackedPodTemplates.containsKey(configMap
-                                    .getMetadata().getUid())) {
-                        List<PodTemplate> templates = podTemplatesFromConfigMap(configMap);
-                        trackedPodTemplates.put(configMap.getMetadata().getUid(),
-                                templates);
-                        for (PodTemplate podTemplate : templates) {
-                            JenkinsUtils.addPodTemplate(podTemplate);
-                        }
+        for (ConfigMap configMap : items) {
+            try {
+                if (containsSlave(configMap)
+                        && !trackedPodTemplates.containsKey(configMap
+                                .getMetadata().getUid())) {
+                    List<PodTemplate> templates = podTemplatesFromConfigMap(configMap);
+                    trackedPodTemplates.put(configMap.getMetadata().getUid(),
+                            templates);
+                    for (PodTemplate podTemplate : templates) {
+                        JenkinsUtils.addPodTemplate(podTemplate);
                     }
-                } catch (Exception e) {
-                    logger.log(SEVERE,
-                            "Failed to update ConfigMap PodTemplates", e);
                 }
+            } catch (Exception e) {
+                logger.log(SEVERE,
+                        "Failed to update ConfigMap PodTemplates", e);
             }
         }
     }
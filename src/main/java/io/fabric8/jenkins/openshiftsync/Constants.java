@@ -40,6 +40,11 @@ public class Constants {
     public static final String OPENSHIFT_LABELS_SECRET_CREDENTIAL_SYNC = "credential.sync.jenkins.openshift.io";
     public static final String VALUE_SECRET_SYNC = "true";
 
+    // label (and, for image stream tags, annotation) marking config maps and
+    // image streams that define slave pod templates
+    public static final String OPENSHIFT_LABELS_SLAVE_ROLE = "role";
+    public static final String VALUE_SLAVE_ROLE = "jenkins-slave";
+
     public static final String OPENSHIFT_SECRETS_DATA_USERNAME = "username";
     public static final String OPENSHIFT_SECRETS_DATA_PASSWORD = "password";
     public static final String OPENSHIFT_SECRETS_DATA_SSHPRIVATEKEY = "ssh-privatekey";
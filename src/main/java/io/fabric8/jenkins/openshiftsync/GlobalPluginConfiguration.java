@@ -51,6 +51,8 @@ public class GlobalPluginConfiguration extends GlobalConfiguration {
 
 	private String[] namespaces;
 
+	private boolean clusterWideWatch = false;
+
 	private boolean foldersEnabled = true;
 
 	private String jobNamePattern;
@@ -64,6 +66,7 @@ public class GlobalPluginConfiguration extends GlobalConfiguration {
   private int secretListInterval = 300;
   private int configMapListInterval = 300;
   private int imageStreamListInterval = 300;
+  private int listPageSize = ResourceLister.DEFAULT_PAGE_SIZE;
     
 	private transient BuildWatcher buildWatcher;
 
@@ -154,6 +157,14 @@ public class GlobalPluginConfiguration extends GlobalConfiguration {
 		this.namespaces = StringUtils.isBlank(namespace) ? null : namespace.split(" ");
 	}
 
+	public boolean isClusterWideWatch() {
+		return clusterWideWatch;
+	}
+
+	public void setClusterWideWatch(boolean clusterWideWatch) {
+		this.clusterWideWatch = clusterWideWatch;
+	}
+
 	public boolean getFoldersEnabled() {
 	  return foldersEnabled;
   }
@@ -226,6 +237,14 @@ public class GlobalPluginConfiguration extends GlobalConfiguration {
         this.imageStreamListInterval = imageStreamListInterval;
     }
 
+    public int getListPageSize() {
+        return listPageSize;
+    }
+
+    public void setListPageSize(int listPageSize) {
+        this.listPageSize = listPageSize;
+    }
+
     // https://wiki.jenkins-ci.org/display/JENKINS/Credentials+Plugin
 	// http://javadoc.jenkins-ci.org/credentials/com/cloudbees/plugins/credentials/common/AbstractIdCredentialsListBoxModel.html
 	// https://github.com/jenkinsci/kubernetes-plugin/blob/master/src/main/java/org/csanchez/jenkins/plugins/kubernetes/KubernetesCloud.java
@@ -301,6 +320,7 @@ public class GlobalPluginConfiguration extends GlobalConfiguration {
 						}
 					}
 
+					BuildStatusOutbox.start();
 					buildConfigWatcher = new BuildConfigWatcher(namespaces);
 					buildConfigWatcher.start();
 					buildWatcher = new BuildWatcher(namespaces);
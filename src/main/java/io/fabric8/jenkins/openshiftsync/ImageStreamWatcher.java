@@ -19,16 +19,18 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.triggers.SafeTimerTask;
 import io.fabric8.kubernetes.client.Watcher.Action;
 import io.fabric8.openshift.api.model.ImageStream;
-import io.fabric8.openshift.api.model.ImageStreamList;
 import io.fabric8.openshift.api.model.ImageStreamTag;
+import io.fabric8.openshift.api.model.NamedTagEventList;
 import io.fabric8.openshift.api.model.TagReference;
 
 import org.csanchez.jenkins.plugins.kubernetes.PodTemplate;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -39,6 +41,13 @@ import static java.util.logging.Level.WARNING;
 public class ImageStreamWatcher extends BaseWatcher {
     private final Logger logger = Logger.getLogger(getClass().getName());
 
+    private static final ResourceCache<ImageStream> imageStreamCache = new ResourceCache<ImageStream>();
+
+    // pod templates of image stream tags carrying the slave annotation whose
+    // image stream has no slave label, by namespace and then tag name; the
+    // label selected list and watch never see these image streams
+    private static final ConcurrentHashMap<String, Map<String, PodTemplate>> annotatedTagTemplates = new ConcurrentHashMap<String, Map<String, PodTemplate>>();
+
     @SuppressFBWarnings("EI_EXPOSE_REP2")
     public ImageStreamWatcher(String[] namespaces) {
         super(namespaces);
@@ -57,13 +66,30 @@ public class ImageStreamWatcher extends BaseWatcher {
                     logger.fine("No Openshift Token credential defined.");
                     return;
                 }
-                for (String namespace : namespaces) {
-                    ImageStreamList imageStreams = null;
+                for (String namespace : getWatchScopes()) {
+                    // image stream tags cannot be watched and the watch only
+                    // sees labeled image streams, so tags that are only
+                    // annotated are picked up every interval
+                    syncAnnotatedImageStreamTags(namespace);
+                    if (watches.get(namespace) != null && imageStreamCache.hasSynced(namespacesOf(namespace))) {
+                        // the watch is live so the cache is current; resync
+                        // from it rather than listing from the API server
+                        onInitialImageStream(imageStreamCache.list(namespacesOf(namespace)));
+                        continue;
+                    }
+                    String listResourceVersion = null;
                     try {
                         logger.fine("listing ImageStream resources");
-                        imageStreams = getAuthenticatedOpenShiftClient()
-                                .imageStreams().inNamespace(namespace).list();
-                        onInitialImageStream(imageStreams);
+                        imageStreamCache.beginReplace(namespacesOf(namespace));
+                        listResourceVersion = ResourceLister.list(ImageStream.class, "imagestreams", true, listNamespace(namespace), SLAVE_LABEL_SELECTOR, null, new ResourceLister.PageHandler<ImageStream>() {
+                                    @Override
+                                    public void onPage(List<ImageStream> items) {
+                                        List<ImageStream> watched = inWatchedNamespaces(items);
+                                        imageStreamCache.addPage(watched);
+                                        onInitialImageStream(watched);
+                                    }
+                                });
+                        imageStreamCache.endReplace(namespacesOf(namespace));
                         logger.fine("handled ImageStream resources");
                     } catch (Exception e) {
                         logger.log(SEVERE, "Failed to load ImageStreams: " + e,
@@ -71,25 +97,36 @@ public class ImageStreamWatcher extends BaseWatcher {
                     }
                     try {
                         String resourceVersion = "0";
-                        if (imageStreams == null) {
+                        if (listResourceVersion == null) {
                             logger.warning("Unable to get image stream list; impacts resource version used for watch");
                         } else {
-                            resourceVersion = imageStreams.getMetadata()
-                                    .getResourceVersion();
+                            resourceVersion = listResourceVersion;
                         }
                         if (watches.get(namespace) == null) {
                             logger.info("creating ImageStream watch for namespace "
                                     + namespace
                                     + " and resource version "
                                     + resourceVersion);
-                            addWatch(namespace,
-                                    getAuthenticatedOpenShiftClient()
-                                            .imageStreams()
-                                            .inNamespace(namespace)
-                                            .withResourceVersion(
-                                                    resourceVersion)
-                                                    .watch(new WatcherCallback<ImageStream>(ImageStreamWatcher.this,
-                                                            namespace)));
+                            WatcherCallback<ImageStream> callback = new WatcherCallback<ImageStream>(ImageStreamWatcher.this, namespace);
+                            if (ALL_NAMESPACES.equals(namespace)) {
+                                addWatch(namespace,
+                                        getAuthenticatedOpenShiftClient()
+                                                .imageStreams()
+                                                .inAnyNamespace()
+                                                .withLabels(SLAVE_LABEL_SELECTOR)
+                                                .withResourceVersion(
+                                                        resourceVersion)
+                                                        .watch(callback));
+                            } else {
+                                addWatch(namespace,
+                                        getAuthenticatedOpenShiftClient()
+                                                .imageStreams()
+                                                .inNamespace(namespace)
+                                                .withLabels(SLAVE_LABEL_SELECTOR)
+                                                .withResourceVersion(
+                                                        resourceVersion)
+                                                        .watch(callback));
+                            }
                         }
                     } catch (Exception e) {
                         logger.log(SEVERE, "Failed to load ImageStreams: " + e,
@@ -139,13 +176,16 @@ public class ImageStreamWatcher extends BaseWatcher {
     @Override
     public <T> void eventReceived(io.fabric8.kubernetes.client.Watcher.Action action, T resource) {
         ImageStream imageStream = (ImageStream)resource;
+        imageStreamCache.onEvent(action, imageStream);
         eventReceived(action, imageStream);
     }
 
-    private void onInitialImageStream(ImageStreamList imageStreams) {
-        if (imageStreams == null)
-            return;
-        List<ImageStream> items = imageStreams.getItems();
+    @Override
+    public ResourceCache<ImageStream> getCache() {
+        return imageStreamCache;
+    }
+
+    private void onInitialImageStream(List<ImageStream> items) {
         if (items != null) {
             for (ImageStream imageStream : items) {
                 try {
@@ -165,6 +205,91 @@ public class ImageStreamWatcher extends BaseWatcher {
         }
     }
 
+    private void syncAnnotatedImageStreamTags(String scope) {
+        final Map<String, Map<String, PodTemplate>> templatesByNamespace = new HashMap<String, Map<String, PodTemplate>>();
+        for (String namespace : namespacesOf(scope)) {
+            templatesByNamespace.put(namespace, new HashMap<String, PodTemplate>());
+        }
+        try {
+            // the annotations of a tag are kept in the spec of its image
+            // stream and its image in the status, so the image streams are
+            // all we need; this is the only list without the slave label
+            // selector
+            ResourceLister.list(ImageStream.class, "imagestreams", true, listNamespace(scope), null, null,
+                    new ResourceLister.PageHandler<ImageStream>() {
+                        @Override
+                        public void onPage(List<ImageStream> items) {
+                            for (ImageStream imageStream : items) {
+                                Map<String, PodTemplate> templates = templatesByNamespace.get(imageStream.getMetadata().getNamespace());
+                                // the tags of a labeled image stream inherit
+                                // the label, which the watch already handles
+                                if (templates == null || imageStream.getSpec() == null
+                                        || hasSlaveLabelOrAnnotation(imageStream.getMetadata().getLabels())) {
+                                    continue;
+                                }
+                                for (TagReference tagRef : imageStream.getSpec().getTags()) {
+                                    if (!hasSlaveLabelOrAnnotation(tagRef.getAnnotations())) {
+                                        continue;
+                                    }
+                                    String image = tagImage(imageStream, tagRef.getName());
+                                    if (image != null) {
+                                        PodTemplate podTemplate = podTemplateFromData(imageStream.getMetadata().getName() + ":"
+                                                + tagRef.getName(), image, tagRef.getAnnotations());
+                                        templates.put(podTemplate.getName(), podTemplate);
+                                    }
+                                }
+                            }
+                        }
+                    });
+        } catch (Exception e) {
+            logger.log(SEVERE, "Failed to load ImageStreams: " + e, e);
+            return;
+        }
+        for (Map.Entry<String, Map<String, PodTemplate>> entry : templatesByNamespace.entrySet()) {
+            onAnnotatedImageStreamTags(entry.getKey(), entry.getValue());
+        }
+    }
+
+    // the image a tag currently points at, as an image stream tag would
+    // report it
+    private static String tagImage(ImageStream imageStream, String tag) {
+        if (imageStream.getStatus() == null || imageStream.getStatus().getTags() == null) {
+            return null;
+        }
+        for (NamedTagEventList events : imageStream.getStatus().getTags()) {
+            if (tag.equals(events.getTag()) && events.getItems() != null && !events.getItems().isEmpty()) {
+                return events.getItems().get(0).getDockerImageReference();
+            }
+        }
+        return null;
+    }
+
+    private void onAnnotatedImageStreamTags(String namespace, Map<String, PodTemplate> current) {
+        Map<String, PodTemplate> previous = annotatedTagTemplates.put(namespace, current);
+        if (previous != null) {
+            // templates still present are replaced in place by the add
+            // below if their image changed
+            for (PodTemplate old : previous.values()) {
+                if (!current.containsKey(old.getName()) && isType.equals(podTemplateToApiType.get(old.getName()))) {
+                    podTemplateToApiType.remove(old.getName());
+                    JenkinsUtils.removePodTemplate(old);
+                }
+            }
+        }
+        for (PodTemplate podTemplate : current.values()) {
+            if (isReservedPodTemplateName(podTemplate.getName()) || JenkinsUtils.hasPodTemplate(podTemplate)) {
+                continue;
+            }
+            String ret = podTemplateToApiType.putIfAbsent(podTemplate.getName(), isType);
+            if (ret == null || ret.equals(isType)) {
+                JenkinsUtils.addPodTemplate(podTemplate);
+            } else {
+                logger.info("The annotated image stream tag " + namespace + "/" + podTemplate.getName()
+                        + " was ignored because a " + ret + " previously created a pod template with the same name");
+            }
+        }
+    }
+
     private List<PodTemplate> podTemplates(ImageStream imageStream) {
         List<PodTemplate> results = new ArrayList<PodTemplate>();
         // for IS, since we can check labels, check there
@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.openshift.api.model.Route;
+import io.fabric8.openshift.client.OpenShiftClient;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Caches the Jenkins URL inferred from the Route or Service of each
+ * namespace, so it is not looked up on every build status update. An entry
+ * is dropped when a Route of its namespace changes, and in any case after
+ * the TTL, which also covers Service changes and namespaces whose Routes we
+ * may not watch.
+ */
+public class JenkinsUrlCache {
+    private static final Logger LOGGER = Logger.getLogger(JenkinsUrlCache.class.getName());
+
+    static final long TTL_MILLIS = TimeUnit.SECONDS.toMillis(Long.getLong(JenkinsUrlCache.class.getName() + ".ttlSeconds", 300L));
+
+    private static final ConcurrentHashMap<String, Entry> urls = new ConcurrentHashMap<String, Entry>();
+    private static final ConcurrentHashMap<String, Watch> routeWatches = new ConcurrentHashMap<String, Watch>();
+
+    /**
+     * The Jenkins URL of a namespace, looking it up if it is not cached
+     */
+    public static String get(OpenShiftClient client, String namespace) {
+        String key = String.valueOf(namespace);
+        Entry entry = urls.get(key);
+        long now = System.currentTimeMillis();
+        if (entry != null && now - entry.resolvedAt < TTL_MILLIS) {
+            return entry.url;
+        }
+        if (namespace != null) {
+            watchRoutes(client, namespace);
+        }
+        String url = OpenShiftUtils.getExternalServiceUrl(client, "http://", namespace, "jenkins");
+        urls.put(key, new Entry(url, now));
+        return url;
+    }
+
+    public static void invalidate(String namespace) {
+        urls.remove(String.valueOf(namespace));
+    }
+
+    /**
+     * Drops all the cached URLs and closes the Route watches, e.g. when the
+     * client they were made with is shut down
+     */
+    public static synchronized void clear() {
+        for (Watch watch : routeWatches.values()) {
+            try {
+                watch.close();
+            } catch (Exception e) {
+                // the client may already be closed
+            }
+        }
+        routeWatches.clear();
+        urls.clear();
+    }
+
+    public static int size() {
+        return urls.size();
+    }
+
+    private static synchronized void watchRoutes(OpenShiftClient client, final String namespace) {
+        if (routeWatches.containsKey(namespace)) {
+            return;
+        }
+        try {
+            Watch watch = client.routes().inNamespace(namespace).watch(new Watcher<Route>() {
+                @Override
+                public void eventReceived(Action action, Route route) {
+                    invalidate(namespace);
+                }
+
+                @Override
+                public void onClose(KubernetesClientException cause) {
+                    // changes may be missed until the watch is opened again
+                    // by the next lookup
+                    routeWatches.remove(namespace);
+                    invalidate(namespace);
+                }
+            });
+            routeWatches.put(namespace, watch);
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Cannot watch the Routes of namespace " + namespace + ", the Jenkins URL is cached for "
+                    + TimeUnit.MILLISECONDS.toSeconds(TTL_MILLIS) + " seconds", e);
+        }
+    }
+
+    private static class Entry {
+        final String url;
+        final long resolvedAt;
+
+        Entry(String url, long resolvedAt) {
+            this.url = url;
+            this.resolvedAt = resolvedAt;
+        }
+    }
+}
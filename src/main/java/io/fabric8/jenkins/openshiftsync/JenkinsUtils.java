@@ -40,7 +40,6 @@ import hudson.plugins.git.RevisionParameterAction;
 import hudson.security.ACL;
 import hudson.slaves.Cloud;
 import hudson.triggers.SafeTimerTask;
-import hudson.util.XStream2;
 import io.fabric8.kubernetes.api.model.EnvVar;
 import io.fabric8.kubernetes.api.model.ObjectMeta;
 import io.fabric8.kubernetes.api.model.Pod;
@@ -56,7 +55,6 @@ import jenkins.security.NotReallyRoleSensitiveCallable;
 import jenkins.util.Timer;
 
 import org.apache.commons.lang.StringUtils;
-import org.apache.tools.ant.filters.StringInputStream;
 import org.csanchez.jenkins.plugins.kubernetes.KubernetesCloud;
 import org.csanchez.jenkins.plugins.kubernetes.PodTemplate;
 import org.csanchez.jenkins.plugins.kubernetes.PodVolumes;
@@ -89,6 +87,7 @@ import static io.fabric8.jenkins.openshiftsync.Annotations.DISABLE_SYNC_CREATE;
 import static io.fabric8.jenkins.openshiftsync.BuildConfigToJobMap.getJobFromBuildConfig;
 import static io.fabric8.jenkins.openshiftsync.BuildConfigToJobMap.putJobWithBuildConfig;
 import static io.fabric8.jenkins.openshiftsync.BuildConfigToJobMapper.mapBuildConfigToFlow;
+import static io.fabric8.jenkins.openshiftsync.BuildConfigWatcher.getBuildConfig;
 import static io.fabric8.jenkins.openshiftsync.BuildPhases.CANCELLED;
 import static io.fabric8.jenkins.openshiftsync.BuildPhases.PENDING;
 import static io.fabric8.jenkins.openshiftsync.BuildRunPolicy.SERIAL;
@@ -224,7 +223,7 @@ public class JenkinsUtils {
 			}
 			// get existing property defs, including any manually added from the
 			// jenkins console independent of BC
-			ParametersDefinitionProperty params = job.removeProperty(ParametersDefinitionProperty.class);
+			ParametersDefinitionProperty params = job.getProperty(ParametersDefinitionProperty.class);
 			paramMap = new HashMap<String, ParameterDefinition>();
 			// store any existing parameters in map for easy key lookup
 			if (params != null) {
@@ -255,15 +254,52 @@ public class JenkinsUtils {
 					paramMap.put(env.getName(), envVar);
 				}
 			}
-			List<ParameterDefinition> newParamList = new ArrayList<ParameterDefinition>(paramMap.values());
-			job.addProperty(new ParametersDefinitionProperty(newParamList));
+			// only touch the job, and so write its config.xml, when the
+			// definitions changed; callers hold the build config's lock, so
+			// of concurrent triggers for a job only the first one that
+			// brings new definitions saves it
+			if (params == null || !sameParameterDefinitions(params.getParameterDefinitions(), paramMap)) {
+				BulkChange bulkChange = new BulkChange(job);
+				try {
+					job.removeProperty(ParametersDefinitionProperty.class);
+					job.addProperty(new ParametersDefinitionProperty(new ArrayList<ParameterDefinition>(paramMap.values())));
+					// save here ... seen some timing issues with concurrent
+					// job updates and run initiations
+					bulkChange.commit();
+				} finally {
+					bulkChange.abort();
+				}
+			}
 		}
-		// force save here ... seen some timing issues with concurrent job updates and run initiations
-        InputStream jobStream = new StringInputStream(new XStream2().toXML(job));
-		updateJob(job, jobStream, null, null);
 		return paramMap;
 	}
 
+	/**
+	 * Whether the definitions are the same as those in the map, comparing
+	 * the definitions we generate from env vars by value
+	 */
+	static boolean sameParameterDefinitions(List<ParameterDefinition> existing, Map<String, ParameterDefinition> paramMap) {
+		if (existing.size() != paramMap.size()) {
+			return false;
+		}
+		for (ParameterDefinition param : existing) {
+			ParameterDefinition other = paramMap.get(param.getName());
+			if (other == param) {
+				continue;
+			}
+			if (!(param instanceof StringParameterDefinition) || other == null || other.getClass() != param.getClass()) {
+				return false;
+			}
+			StringParameterDefinition stringParam = (StringParameterDefinition) param;
+			StringParameterDefinition otherStringParam = (StringParameterDefinition) other;
+			if (!StringUtils.equals(stringParam.getDescription(), otherStringParam.getDescription())
+					|| !StringUtils.equals(stringParam.getDefaultValue(), otherStringParam.getDefaultValue())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	public static List<Action> setJobRunParamsFromEnv(WorkflowJob job, JenkinsPipelineBuildStrategy strat,
 			List<Action> buildActions) {
 		List<EnvVar> envs = strat.getEnv();
@@ -411,22 +447,26 @@ public class JenkinsUtils {
 
         ObjectMeta meta = build.getMetadata();
         String namespace = meta.getNamespace();
-        BuildConfig buildConfig = getAuthenticatedOpenShiftClient()
-                .buildConfigs().inNamespace(namespace)
-                .withName(buildConfigName).get();
+        BuildConfig buildConfig = getBuildConfig(namespace, buildConfigName);
         if (buildConfig == null) {
             return false;
         }
 
-        // sync on intern of name should guarantee sync on same actual obj
-        synchronized (buildConfig.getMetadata().getUid().intern()) {
+        String bcUid = buildConfig.getMetadata().getUid();
+        if (!UidLocks.tryLock(bcUid)) {
+            LOGGER.warning("Timed out waiting to trigger build " + namespace + "/" + meta.getName()
+                    + "; it will be retried on the next resync");
+            return false;
+        }
+        try {
             updateSourceCredentials(buildConfig);
 
             // We need to ensure that we do not remove
             // existing Causes from a Run since other
             // plugins may rely on them.
             List<Cause> newCauses = new ArrayList<>();
-            newCauses.add(new BuildCause(build, bcProp.getUid()));
+            BuildCause buildCause = new BuildCause(build, bcProp.getUid());
+            newCauses.add(buildCause);
             CauseAction originalCauseAction = BuildToActionMapper
                     .removeCauseAction(build.getMetadata().getName());
             if (originalCauseAction != null) {
@@ -493,22 +533,26 @@ public class JenkinsUtils {
             }
             putJobWithBuildConfig(job, buildConfig);
 
+            buildCause.setQueuedAt(System.currentTimeMillis());
             if (job.scheduleBuild2(0,
-                    buildActions.toArray(new Action[buildActions.size()])) != null) {
-                updateOpenShiftBuildPhase(build, PENDING);
-                // If builds are queued too quickly, Jenkins can add the cause
-                // to the previous queued build so let's add a tiny
-                // sleep.
-                try {
-                    Thread.sleep(50l);
-                } catch (InterruptedException e) {
-                    // Ignore
-                }
-                return true;
+                    buildActions.toArray(new Action[buildActions.size()])) == null) {
+                return false;
             }
-
-            return false;
+            // If builds are queued too quickly, Jenkins can add the cause
+            // to the previous queued build so let's add a tiny
+            // sleep.
+            try {
+                Thread.sleep(50l);
+            } catch (InterruptedException e) {
+                // Ignore
+            }
+        } finally {
+            UidLocks.unlock(bcUid);
         }
+        // not under the lock, so the events of the build config do not wait
+        // while the API rate limiter holds the update back
+        updateOpenShiftBuildPhase(build, PENDING);
+        return true;
     }
 
 	private static boolean isAlreadyTriggered(WorkflowJob job, Build build) {
@@ -534,30 +578,27 @@ public class JenkinsUtils {
 	}
 
 	private static WorkflowRun getRun(WorkflowJob job, Build build) {
-		if (build != null && build.getMetadata() != null) {
-			return getRun(job, build.getMetadata().getUid(), 0);
+		if (job != null && build != null && build.getMetadata() != null) {
+			return getRun(job, build.getMetadata().getUid());
 		}
 		return null;
 	}
 
-	private static WorkflowRun getRun(WorkflowJob job, String buildUid, int retry) {
-	    try {
-	        for (WorkflowRun run : job.getBuilds()) {
-	            BuildCause cause = run.getCause(BuildCause.class);
-	            if (cause != null && cause.getUid().equals(buildUid)) {
-	                return run;
-	            }
-	        }
-	    } catch (Throwable t) {
-	        if (retry == 0) {
-	            try {
-                    Thread.sleep(1000);
-                } catch (InterruptedException e) {
-                }
-	            return getRun(job, buildUid, 1);
-	        }
-	        LOGGER.log(Level.WARNING, "Jenkins unavailability accessing job run; have to assume it does not exist", t);
-	    }
+	// looks the run up in the build UID index and loads only that run
+	private static WorkflowRun getRun(WorkflowJob job, String buildUid) {
+		int number = BuildRunIndex.getRunNumber(job, buildUid);
+		if (number < 0) {
+			return null;
+		}
+		WorkflowRun run = job.getBuildByNumber(number);
+		if (run != null) {
+			BuildCause cause = run.getCause(BuildCause.class);
+			if (cause != null && buildUid.equals(cause.getUid())) {
+				return run;
+			}
+		}
+		// the run is gone or its number was reused; drop the stale entry
+		BuildRunIndex.remove(job.getFullName(), buildUid);
 		return null;
 	}
 
@@ -572,12 +613,14 @@ public class JenkinsUtils {
 
   public static void deleteRun(WorkflowJob job, Build build) {
       WorkflowRun run = getRun(job, build);
-      deleteRun(run);
+      if (run != null) {
+          deleteRun(run);
+      }
   }
 
 	private static boolean cancelRunningBuild(WorkflowJob job, Build build) {
 		String buildUid = build.getMetadata().getUid();
-		WorkflowRun run = getRun(job, buildUid, 0);
+		WorkflowRun run = getRun(job, buildUid);
 		if (run != null && run.isBuilding()) {
 			terminateRun(run);
 			return true;
@@ -587,7 +630,7 @@ public class JenkinsUtils {
 
 	private static boolean cancelNotYetStartedBuild(WorkflowJob job, Build build) {
 		String buildUid = build.getMetadata().getUid();
-		WorkflowRun run = getRun(job, buildUid, 0);
+		WorkflowRun run = getRun(job, buildUid);
 		if (run != null && run.hasntStartedYet()) {
 			terminateRun(run);
 			return true;
@@ -677,8 +720,7 @@ public class JenkinsUtils {
 		    return job;
 		}
 
-		BuildConfig buildConfig = getAuthenticatedOpenShiftClient().buildConfigs()
-				.inNamespace(build.getMetadata().getNamespace()).withName(buildConfigName).get();
+		BuildConfig buildConfig = getBuildConfig(build.getMetadata().getNamespace(), buildConfigName);
 		if (buildConfig == null) {
 			return null;
 		}
@@ -711,10 +753,15 @@ public class JenkinsUtils {
 			return;
 		}
 
-		List<Build> builds = getAuthenticatedOpenShiftClient().builds().inNamespace(bcp.getNamespace())
-				.withField(OPENSHIFT_BUILD_STATUS_FIELD, BuildPhases.NEW)
-				.withLabel(OPENSHIFT_LABELS_BUILD_CONFIG_NAME, bcp.getName()).list().getItems();
-		handleBuildList(job, builds, bcp);
+		ApiRateLimiter.Priority previous = ApiRateLimiter.setPriority(ApiRateLimiter.Priority.TRIGGER);
+		try {
+			List<Build> builds = getAuthenticatedOpenShiftClient().builds().inNamespace(bcp.getNamespace())
+					.withField(OPENSHIFT_BUILD_STATUS_FIELD, BuildPhases.NEW)
+					.withLabel(OPENSHIFT_LABELS_BUILD_CONFIG_NAME, bcp.getName()).list().getItems();
+			handleBuildList(job, builds, bcp);
+		} finally {
+			ApiRateLimiter.setPriority(previous);
+		}
 	}
 
 	public static void handleBuildList(WorkflowJob job, List<Build> builds,
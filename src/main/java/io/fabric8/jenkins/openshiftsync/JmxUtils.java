@@ -0,0 +1,66 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import java.lang.management.ManagementFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registers the plugin's MXBeans with the platform MBean server.
+ */
+public class JmxUtils {
+    private static final Logger LOGGER = Logger.getLogger(JmxUtils.class.getName());
+
+    static final String DOMAIN = "io.fabric8.jenkins.openshiftsync";
+
+    /**
+     * Registers an MXBean as {@code io.fabric8.jenkins.openshiftsync:type=<type>,<key>=<value>,..}
+     * unless a bean of that name is registered already; failures are logged
+     *
+     * @param keysAndValues
+     *            the further keys of the name, each followed by its value
+     */
+    public static void register(Object bean, String type, String... keysAndValues) {
+        StringBuilder name = new StringBuilder(DOMAIN).append(":type=").append(value(type));
+        for (int i = 0; i + 1 < keysAndValues.length; i += 2) {
+            name.append(',').append(keysAndValues[i]).append('=').append(value(keysAndValues[i + 1]));
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(name.toString());
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(bean, objectName);
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Cannot register MBean " + name, e);
+        }
+    }
+
+    // Kubernetes names need no quoting, "*" scopes and paths outside the
+    // API might
+    static String value(String value) {
+        for (char c : value.toCharArray()) {
+            if (",=:\"*?\n".indexOf(c) >= 0) {
+                return ObjectName.quote(value);
+            }
+        }
+        return value;
+    }
+}
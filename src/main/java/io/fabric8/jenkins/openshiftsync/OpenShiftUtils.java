@@ -31,8 +31,8 @@ import io.fabric8.kubernetes.api.model.ReplicationController;
 import io.fabric8.kubernetes.api.model.ReplicationControllerStatus;
 import io.fabric8.kubernetes.api.model.Service;
 import io.fabric8.kubernetes.api.model.ServiceSpec;
-import io.fabric8.kubernetes.client.Config;
 import io.fabric8.kubernetes.client.Version;
+import io.fabric8.kubernetes.client.utils.HttpClientUtils;
 import io.fabric8.openshift.api.model.Build;
 import io.fabric8.openshift.api.model.BuildConfig;
 import io.fabric8.openshift.api.model.BuildConfigSpec;
@@ -44,8 +44,10 @@ import io.fabric8.openshift.api.model.RouteList;
 import io.fabric8.openshift.api.model.RouteSpec;
 import io.fabric8.openshift.client.DefaultOpenShiftClient;
 import io.fabric8.openshift.client.OpenShiftClient;
+import io.fabric8.openshift.client.OpenShiftConfig;
 import io.fabric8.openshift.client.OpenShiftConfigBuilder;
 import jenkins.model.Jenkins;
+import okhttp3.OkHttpClient;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.tools.ant.filters.StringInputStream;
@@ -63,8 +65,10 @@ import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -81,8 +85,14 @@ public class OpenShiftUtils {
     private final static Logger logger = Logger.getLogger(OpenShiftUtils.class
             .getName());
 
-    private static OpenShiftClient openShiftClient;
+    static final long TOKEN_TTL_MILLIS = TimeUnit.SECONDS.toMillis(Long.getLong(OpenShiftUtils.class.getName() + ".tokenTtlSeconds", 60L));
+
+    // written under the class lock, read without it; the authenticated
+    // client is reset whenever the client is replaced
+    private static volatile OpenShiftClient openShiftClient;
+    private static volatile AuthenticatedClient authenticatedClient;
     private static String jenkinsPodNamespace = null;
+    private static final Object folderCreationLock = new Object();
     
     static {
         jenkinsPodNamespace = System
@@ -134,41 +144,91 @@ public class OpenShiftUtils {
         if (serverUrl != null && !serverUrl.isEmpty()) {
             configBuilder.withMasterUrl(serverUrl);
         }
-        Config config = configBuilder.build();
+        OpenShiftConfig config = configBuilder.build();
         config.setUserAgent("openshift-sync-plugin-"
                 + Jenkins.getInstance().getPluginManager()
                         .getPlugin("openshift-sync").getVersion() + "/fabric8-"
                 + Version.clientVersion());
-        openShiftClient = new DefaultOpenShiftClient(config);
-        DefaultOpenShiftClient defClient = (DefaultOpenShiftClient)openShiftClient;
+        OkHttpClient httpClient = HttpClientUtils.createHttpClient(config).newBuilder()
+                .addInterceptor(ApiRateLimiter.get()).addInterceptor(ApiMetrics.get()).build();
+        DefaultOpenShiftClient defClient = new DefaultOpenShiftClient(httpClient, config);
         defClient.getHttpClient().dispatcher().setMaxRequestsPerHost(100);
         defClient.getHttpClient().dispatcher().setMaxRequests(100);
+        authenticatedClient = null;
+        openShiftClient = defClient;
     }
 
-    public synchronized static OpenShiftClient getOpenShiftClient() {
+    public static OpenShiftClient getOpenShiftClient() {
         return openShiftClient;
     }
 
     // Get the current OpenShiftClient and configure to use the current Oauth
-    // token.
-    public synchronized static OpenShiftClient getAuthenticatedOpenShiftClient() {
-        if (openShiftClient != null) {
-            String token = CredentialsUtils.getCurrentToken();
-            if (token.length() > 0) {
-                openShiftClient.getConfiguration().setOauthToken(token);
-            }
+    // token. The token is looked up again only after the TTL or a change of
+    // the credentials, so this usually is a single volatile read.
+    public static OpenShiftClient getAuthenticatedOpenShiftClient() {
+        AuthenticatedClient current = authenticatedClient;
+        if (current != null && System.currentTimeMillis() < current.expiresAt) {
+            return current.client;
         }
+        return refreshAuthenticatedClient();
+    }
 
-        return openShiftClient;
+    private synchronized static OpenShiftClient refreshAuthenticatedClient() {
+        OpenShiftClient client = openShiftClient;
+        AuthenticatedClient current = authenticatedClient;
+        if (current != null && current.client == client
+                && System.currentTimeMillis() < current.expiresAt) {
+            // refreshed by another thread in the meantime
+            return client;
+        }
+        if (client == null) {
+            authenticatedClient = null;
+            return null;
+        }
+        String token = CredentialsUtils.getCurrentToken();
+        if (token.length() > 0) {
+            client.getConfiguration().setOauthToken(token);
+        }
+        authenticatedClient = new AuthenticatedClient(client,
+                System.currentTimeMillis() + TOKEN_TTL_MILLIS);
+        return client;
+    }
+
+    /**
+     * Makes the next call of {@link #getAuthenticatedOpenShiftClient()} look
+     * up the token again, e.g. because the credentials changed
+     */
+    public synchronized static void invalidateToken() {
+        authenticatedClient = null;
+    }
+
+    /**
+     * The HTTP client of the authenticated OpenShift client, for the calls the
+     * fabric8 client has no DSL for
+     */
+    static OkHttpClient getHttpClient() {
+        return ((DefaultOpenShiftClient) getAuthenticatedOpenShiftClient()).getHttpClient();
     }
 
     public synchronized static void shutdownOpenShiftClient() {
+        JenkinsUrlCache.clear();
+        authenticatedClient = null;
         if (openShiftClient != null) {
             openShiftClient.close();
             openShiftClient = null;
         }
     }
 
+    private static final class AuthenticatedClient {
+        final OpenShiftClient client;
+        final long expiresAt;
+
+        AuthenticatedClient(OpenShiftClient client, long expiresAt) {
+            this.client = client;
+            this.expiresAt = expiresAt;
+        }
+    }
+
     /**
      * Checks if a {@link BuildConfig} relates to a Jenkins build
      *
@@ -274,34 +334,42 @@ public class OpenShiftUtils {
             if (parent instanceof ItemGroup) {
                 return (ItemGroup) parent;
             } else if (parentFullName.equals(namespace)) {
+                // BuildConfigs of one namespace can be handled on different
+                // event lanes, so only let one of them create the folder
+                synchronized (folderCreationLock) {
+                    parent = activeJenkins.getItemByFullName(parentFullName);
+                    if (parent instanceof ItemGroup) {
+                        return (ItemGroup) parent;
+                    }
 
-                // lets lazily create a new folder for this namespace parent
-                Folder folder = new Folder(activeJenkins, namespace);
-                try {
-                    folder.setDescription("Folder for the OpenShift project: "
-                            + namespace);
-                } catch (IOException e) {
-                    // ignore
-                }
-                BulkChange bk = new BulkChange(folder);
-                InputStream jobStream = new StringInputStream(
-                        new XStream2().toXML(folder));
-                try {
-                    activeJenkins.createProjectFromXML(namespace, jobStream)
-                            .save();
-                } catch (IOException e) {
-                    logger.warning("Failed to create the Folder: " + namespace);
-                }
-                try {
-                    bk.commit();
-                } catch (IOException e) {
-                    logger.warning("Failed to commit toe BulkChange for the Folder: "
-                            + namespace);
-                }
-                // lets look it up again to be sure
-                parent = activeJenkins.getItemByFullName(namespace);
-                if (parent instanceof ItemGroup) {
-                    return (ItemGroup) parent;
+                    // lets lazily create a new folder for this namespace parent
+                    Folder folder = new Folder(activeJenkins, namespace);
+                    try {
+                        folder.setDescription("Folder for the OpenShift project: "
+                                + namespace);
+                    } catch (IOException e) {
+                        // ignore
+                    }
+                    BulkChange bk = new BulkChange(folder);
+                    InputStream jobStream = new StringInputStream(
+                            new XStream2().toXML(folder));
+                    try {
+                        activeJenkins.createProjectFromXML(namespace, jobStream)
+                                .save();
+                    } catch (IOException e) {
+                        logger.warning("Failed to create the Folder: " + namespace);
+                    }
+                    try {
+                        bk.commit();
+                    } catch (IOException e) {
+                        logger.warning("Failed to commit toe BulkChange for the Folder: "
+                                + namespace);
+                    }
+                    // lets look it up again to be sure
+                    parent = activeJenkins.getItemByFullName(namespace);
+                    if (parent instanceof ItemGroup) {
+                        return (ItemGroup) parent;
+                    }
                 }
             }
         }
@@ -454,11 +522,10 @@ public class OpenShiftUtils {
         }
 
         // otherwise, we'll see if we are running in a pod and can infer it from
-        // the service/route
+        // the service/route, which we cache as it rarely changes
         // TODO we will eventually make the service name configurable, with the
         // default of "jenkins"
-        return getExternalServiceUrl(openShiftClient, "http://", namespace,
-                "jenkins");
+        return JenkinsUrlCache.get(openShiftClient, namespace);
     }
 
     public static String getNamespacefromPodInputs() {
@@ -501,10 +568,11 @@ public class OpenShiftUtils {
         logger.log(FINE, "setting build to {0} in namespace {1}/{2}",
                 new Object[] { phase, build.getMetadata().getNamespace(),
                         build.getMetadata().getName() });
-        getAuthenticatedOpenShiftClient().builds()
-                .inNamespace(build.getMetadata().getNamespace())
-                .withName(build.getMetadata().getName()).edit().editStatus()
-                .withPhase(phase).endStatus().done();
+        // queued like the status updates of the run, so one queued earlier
+        // cannot be sent after this and undo a cancellation
+        BuildStatusOutbox.offer(build.getMetadata().getNamespace(), build
+                .getMetadata().getName(), null, Collections
+                .<String, Object> singletonMap("phase", phase), null);
     }
 
     /**
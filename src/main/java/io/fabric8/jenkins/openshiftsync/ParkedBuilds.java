@@ -0,0 +1,242 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import io.fabric8.openshift.api.model.Build;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import static io.fabric8.jenkins.openshiftsync.Constants.OPENSHIFT_ANNOTATIONS_BUILD_NUMBER;
+
+/**
+ * Holds the new builds whose BuildConfig has no job yet, indexed by
+ * namespace/BuildConfig name, so that when the job for a BuildConfig gets
+ * mapped only its own builds are released. Builds that stay parked longer
+ * than the TTL are dropped; if they are still new the next build relist parks
+ * them again.
+ */
+public final class ParkedBuilds {
+    private static final Logger LOGGER = Logger.getLogger(ParkedBuilds.class.getName());
+
+    static final long TTL_MILLIS = TimeUnit.SECONDS.toMillis(Long.getLong(ParkedBuilds.class.getName() + ".ttlSeconds", 600L));
+
+    // namespace/buildconfig name -> build name -> parked build
+    private static final Map<String, Map<String, Parked>> byBuildConfig = new HashMap<String, Map<String, Parked>>();
+    private static int parkedCount;
+
+    private static final AtomicLong released = new AtomicLong();
+    private static final AtomicLong evicted = new AtomicLong();
+
+    private ParkedBuilds() {
+    }
+
+    /**
+     * Parks a build until the job of its BuildConfig is mapped
+     *
+     * @return false if the build names no BuildConfig and cannot be parked
+     */
+    public static synchronized boolean park(Build build) {
+        String key = key(build);
+        if (key == null) {
+            return false;
+        }
+        Map<String, Parked> builds = byBuildConfig.get(key);
+        if (builds == null) {
+            builds = new HashMap<String, Parked>();
+            byBuildConfig.put(key, builds);
+        }
+        Parked old = builds.get(build.getMetadata().getName());
+        // keep the original time so a build re-parked by every relist still
+        // expires
+        long parkedAt = old != null ? old.parkedAt : System.currentTimeMillis();
+        builds.put(build.getMetadata().getName(), new Parked(build, parkedAt));
+        if (old == null) {
+            parkedCount++;
+        }
+        return true;
+    }
+
+    public static synchronized void remove(Build build) {
+        String key = key(build);
+        if (key == null) {
+            return;
+        }
+        Map<String, Parked> builds = byBuildConfig.get(key);
+        if (builds != null && builds.remove(build.getMetadata().getName()) != null) {
+            parkedCount--;
+            if (builds.isEmpty()) {
+                byBuildConfig.remove(key);
+            }
+        }
+    }
+
+    public static synchronized boolean isParked(Build build) {
+        String key = key(build);
+        if (key == null) {
+            return false;
+        }
+        Map<String, Parked> builds = byBuildConfig.get(key);
+        return builds != null && builds.containsKey(build.getMetadata().getName());
+    }
+
+    /**
+     * Removes and returns the builds parked for a BuildConfig, oldest build
+     * number first
+     */
+    public static List<Build> release(String namespace, String buildConfigName) {
+        List<Build> result = new ArrayList<Build>();
+        synchronized (ParkedBuilds.class) {
+            Map<String, Parked> builds = byBuildConfig.remove(key(namespace, buildConfigName));
+            if (builds == null) {
+                return result;
+            }
+            parkedCount -= builds.size();
+            for (Parked parked : builds.values()) {
+                result.add(parked.build);
+            }
+        }
+        released.addAndGet(result.size());
+        Collections.sort(result, BY_BUILD_NUMBER);
+        return result;
+    }
+
+    /**
+     * The namespace/name keys of the BuildConfigs with parked builds
+     */
+    public static synchronized List<String> getParkedBuildConfigs() {
+        return new ArrayList<String>(byBuildConfig.keySet());
+    }
+
+    /**
+     * Drops the builds parked for longer than the TTL
+     *
+     * @return the number of builds dropped
+     */
+    public static int evictExpired() {
+        return evictOlderThan(System.currentTimeMillis() - TTL_MILLIS);
+    }
+
+    static synchronized int evictOlderThan(long cutoff) {
+        int count = 0;
+        Iterator<Map.Entry<String, Map<String, Parked>>> bcs = byBuildConfig.entrySet().iterator();
+        while (bcs.hasNext()) {
+            Map.Entry<String, Map<String, Parked>> bc = bcs.next();
+            Iterator<Parked> builds = bc.getValue().values().iterator();
+            while (builds.hasNext()) {
+                Parked parked = builds.next();
+                if (parked.parkedAt < cutoff) {
+                    LOGGER.info("dropping build " + parked.build.getMetadata().getName() + " parked for BuildConfig " + bc.getKey()
+                            + " which still has no job");
+                    builds.remove();
+                    count++;
+                }
+            }
+            if (bc.getValue().isEmpty()) {
+                bcs.remove();
+            }
+        }
+        parkedCount -= count;
+        evicted.addAndGet(count);
+        return count;
+    }
+
+    public static synchronized int getParkedCount() {
+        return parkedCount;
+    }
+
+    public static synchronized int getParkedBuildConfigCount() {
+        return byBuildConfig.size();
+    }
+
+    /**
+     * The number of parked builds per namespace/BuildConfig name
+     */
+    public static synchronized Map<String, Integer> getParkedCounts() {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (Map.Entry<String, Map<String, Parked>> entry : byBuildConfig.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().size());
+        }
+        return counts;
+    }
+
+    public static long getReleasedCount() {
+        return released.get();
+    }
+
+    public static long getEvictedCount() {
+        return evicted.get();
+    }
+
+    static synchronized void clear() {
+        byBuildConfig.clear();
+        parkedCount = 0;
+    }
+
+    static String key(String namespace, String buildConfigName) {
+        return namespace + "/" + buildConfigName;
+    }
+
+    private static String key(Build build) {
+        if (build.getMetadata() == null || build.getStatus() == null || build.getStatus().getConfig() == null) {
+            return null;
+        }
+        String buildConfigName = build.getStatus().getConfig().getName();
+        if (StringUtils.isEmpty(buildConfigName)) {
+            return null;
+        }
+        return key(build.getMetadata().getNamespace(), buildConfigName);
+    }
+
+    private static final Comparator<Build> BY_BUILD_NUMBER = new Comparator<Build>() {
+        @Override
+        public int compare(Build b1, Build b2) {
+            return Long.compare(buildNumber(b1), buildNumber(b2));
+        }
+    };
+
+    private static long buildNumber(Build build) {
+        Map<String, String> annotations = build.getMetadata().getAnnotations();
+        if (annotations != null) {
+            try {
+                return Long.parseLong(annotations.get(OPENSHIFT_ANNOTATIONS_BUILD_NUMBER));
+            } catch (NumberFormatException e) {
+                // fall through
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private static class Parked {
+        final Build build;
+        final long parkedAt;
+
+        Parked(Build build, long parkedAt) {
+            this.build = build;
+            this.parkedAt = parkedAt;
+        }
+    }
+}
@@ -108,14 +108,17 @@ public class PipelineJobListener extends ItemListener {
         super.onDeleted(item);
         if (item instanceof WorkflowJob) {
             WorkflowJob job = (WorkflowJob) item;
+            BuildRunIndex.forget(job.getFullName());
             BuildConfigProjectProperty property = buildConfigProjectForJob(job);
             if (property != null) {
+                // so the next relist does not skip its BuildConfig
+                BuildConfigFingerprints.forget(property.getUid());
 
                 NamespaceName buildName = OpenShiftUtils.buildConfigNameFromJenkinsJobName(job.getName(), job.getProperty(BuildConfigProjectProperty.class).getNamespace());
 
                 String namespace = buildName.getNamespace();
                 String buildConfigName = buildName.getName();
-                BuildConfig buildConfig = getAuthenticatedOpenShiftClient().buildConfigs().inNamespace(namespace).withName(buildConfigName).get();
+                BuildConfig buildConfig = BuildConfigWatcher.getBuildConfig(namespace, buildConfigName);
                 if (buildConfig != null) {
                     boolean generatedBySyncPlugin = false;
                     Map<String, String> annotations = buildConfig.getMetadata().getAnnotations();
@@ -0,0 +1,281 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.ObjectMeta;
+import io.fabric8.kubernetes.client.Watcher.Action;
+
+import org.eclipse.jetty.util.ConcurrentHashSet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An informer style local store for one type of API object. A watcher seeds
+ * the store for a namespace with a single list and then keeps it current from
+ * its watch events, so periodic resyncs and lookups from other code paths can
+ * be served from memory rather than from the API server.
+ */
+public class ResourceCache<T extends HasMetadata> {
+
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, T>> byNamespace = new ConcurrentHashMap<String, ConcurrentHashMap<String, T>>();
+    private final ConcurrentHashMap<String, T> byUid = new ConcurrentHashMap<String, T>();
+    // namespaces whose content reflects a completed list plus the watch
+    // events received since then
+    private final ConcurrentHashSet<String> synced = new ConcurrentHashSet<String>();
+    // the names listed so far per namespace being replaced page by page
+    private final ConcurrentHashMap<String, ConcurrentHashSet<String>> replacing = new ConcurrentHashMap<String, ConcurrentHashSet<String>>();
+
+    /**
+     * Replaces the content for a namespace with the result of a list and
+     * marks the namespace as synced
+     */
+    public void replace(String namespace, List<T> items) {
+        ConcurrentHashMap<String, T> fresh = new ConcurrentHashMap<String, T>();
+        if (items != null) {
+            for (T item : items) {
+                ObjectMeta meta = item.getMetadata();
+                if (meta != null && meta.getName() != null) {
+                    fresh.put(meta.getName(), item);
+                }
+            }
+        }
+        ConcurrentHashMap<String, T> old = byNamespace.put(namespace, fresh);
+        if (old != null) {
+            for (T item : old.values()) {
+                String uid = item.getMetadata().getUid();
+                if (uid != null) {
+                    byUid.remove(uid, item);
+                }
+            }
+        }
+        for (T item : fresh.values()) {
+            String uid = item.getMetadata().getUid();
+            if (uid != null) {
+                byUid.put(uid, item);
+            }
+        }
+        synced.add(namespace);
+    }
+
+    /**
+     * Replaces the content for several namespaces with the result of one list
+     * spanning all of them, as done by a cluster wide watcher
+     */
+    public void replace(Collection<String> namespaces, List<T> items) {
+        beginReplace(namespaces);
+        addPage(items);
+        endReplace(namespaces);
+    }
+
+    /**
+     * Starts replacing the content for namespaces with a list handled page by
+     * page, so no more than a page of objects is held besides the store. The
+     * namespaces are not synced until {@link #endReplace(Collection)}; a list
+     * that fails half way leaves them unsynced for the next relist.
+     */
+    public void beginReplace(Collection<String> namespaces) {
+        for (String namespace : namespaces) {
+            synced.remove(namespace);
+            replacing.put(namespace, new ConcurrentHashSet<String>());
+        }
+    }
+
+    /**
+     * Stores a page of a list started with {@link #beginReplace(Collection)};
+     * objects of other namespaces are ignored
+     */
+    public void addPage(List<T> items) {
+        if (items == null) {
+            return;
+        }
+        for (T item : items) {
+            ObjectMeta meta = item.getMetadata();
+            if (meta == null || meta.getNamespace() == null || meta.getName() == null) {
+                continue;
+            }
+            Set<String> seen = replacing.get(meta.getNamespace());
+            if (seen != null) {
+                seen.add(meta.getName());
+                upsert(item);
+            }
+        }
+    }
+
+    /**
+     * Drops the objects the list did not return and marks the namespaces as
+     * synced
+     */
+    public void endReplace(Collection<String> namespaces) {
+        for (String namespace : namespaces) {
+            Set<String> seen = replacing.remove(namespace);
+            if (seen == null) {
+                continue;
+            }
+            Map<String, T> items = byNamespace.get(namespace);
+            if (items != null) {
+                for (T item : new ArrayList<T>(items.values())) {
+                    if (!seen.contains(item.getMetadata().getName())) {
+                        remove(item);
+                    }
+                }
+            }
+            synced.add(namespace);
+        }
+    }
+
+    /**
+     * Applies a watch event to the store
+     */
+    public void onEvent(Action action, T item) {
+        if (action == null || item == null) {
+            return;
+        }
+        switch (action) {
+        case ADDED:
+        case MODIFIED:
+            upsert(item);
+            break;
+        case DELETED:
+            remove(item);
+            break;
+        default:
+            break;
+        }
+    }
+
+    public void upsert(T item) {
+        ObjectMeta meta = item.getMetadata();
+        if (meta == null || meta.getNamespace() == null || meta.getName() == null) {
+            return;
+        }
+        ConcurrentHashMap<String, T> items = byNamespace.get(meta.getNamespace());
+        if (items == null) {
+            ConcurrentHashMap<String, T> created = new ConcurrentHashMap<String, T>();
+            items = byNamespace.putIfAbsent(meta.getNamespace(), created);
+            if (items == null) {
+                items = created;
+            }
+        }
+        T old = items.put(meta.getName(), item);
+        if (old != null && old.getMetadata().getUid() != null && !old.getMetadata().getUid().equals(meta.getUid())) {
+            byUid.remove(old.getMetadata().getUid(), old);
+        }
+        if (meta.getUid() != null) {
+            byUid.put(meta.getUid(), item);
+        }
+    }
+
+    public void remove(T item) {
+        ObjectMeta meta = item.getMetadata();
+        if (meta == null || meta.getNamespace() == null || meta.getName() == null) {
+            return;
+        }
+        ConcurrentHashMap<String, T> items = byNamespace.get(meta.getNamespace());
+        if (items != null) {
+            T old = items.remove(meta.getName());
+            if (old != null && old.getMetadata().getUid() != null) {
+                byUid.remove(old.getMetadata().getUid(), old);
+            }
+        }
+        if (meta.getUid() != null) {
+            byUid.remove(meta.getUid());
+        }
+    }
+
+    public T get(String namespace, String name) {
+        if (namespace == null || name == null) {
+            return null;
+        }
+        Map<String, T> items = byNamespace.get(namespace);
+        if (items == null) {
+            return null;
+        }
+        return items.get(name);
+    }
+
+    public T getByUid(String uid) {
+        if (uid == null) {
+            return null;
+        }
+        return byUid.get(uid);
+    }
+
+    public List<T> list(String namespace) {
+        Map<String, T> items = byNamespace.get(namespace);
+        if (items == null) {
+            return new ArrayList<T>();
+        }
+        return new ArrayList<T>(items.values());
+    }
+
+    public List<T> list(Collection<String> namespaces) {
+        List<T> items = new ArrayList<T>();
+        for (String namespace : namespaces) {
+            items.addAll(list(namespace));
+        }
+        return items;
+    }
+
+    /**
+     * Whether the namespace has been seeded by a list and is still being kept
+     * current by a watch; callers should fall back to the API server if not
+     */
+    public boolean hasSynced(String namespace) {
+        return namespace != null && synced.contains(namespace);
+    }
+
+    public boolean hasSynced(Collection<String> namespaces) {
+        for (String namespace : namespaces) {
+            if (!hasSynced(namespace)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Flags a namespace as stale, typically because its watch closed; the
+     * content is kept but the next relist will replace it
+     */
+    public void invalidate(String namespace) {
+        if (namespace != null) {
+            synced.remove(namespace);
+        }
+    }
+
+    public void invalidate(Collection<String> namespaces) {
+        for (String namespace : namespaces) {
+            invalidate(namespace);
+        }
+    }
+
+    public int size() {
+        return byUid.size();
+    }
+
+    public void clear() {
+        synced.clear();
+        replacing.clear();
+        byNamespace.clear();
+        byUid.clear();
+    }
+}
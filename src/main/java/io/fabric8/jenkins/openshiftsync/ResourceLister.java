@@ -0,0 +1,246 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.openshift.client.OpenShiftClient;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import static io.fabric8.jenkins.openshiftsync.OpenShiftUtils.getAuthenticatedOpenShiftClient;
+import static io.fabric8.jenkins.openshiftsync.OpenShiftUtils.getHttpClient;
+import static java.net.HttpURLConnection.HTTP_GONE;
+
+/**
+ * Lists API objects in pages using the limit / continue parameters of the list
+ * API, parsing each page straight off the response stream. Only one page of
+ * objects is materialized at a time, so the transient memory used by a relist
+ * is bounded by the page size rather than by the size of the namespace.
+ *
+ * API servers that do not support chunking ignore the limit and answer with a
+ * single page, which is handled the same way.
+ */
+public class ResourceLister {
+    private static final Logger LOGGER = Logger.getLogger(ResourceLister.class.getName());
+
+    static final int DEFAULT_PAGE_SIZE = 500;
+
+    private static final ObjectMapper mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    /**
+     * Receives the objects of a list one page at a time; if an expired
+     * continue token forces the list to start over, objects of pages already
+     * handled are delivered again
+     */
+    public interface PageHandler<T> {
+        void onPage(List<T> items) throws Exception;
+    }
+
+    /**
+     * Lists the objects of a resource type in pages.
+     *
+     * @param type
+     *            the model class of the objects
+     * @param resource
+     *            the plural resource name, e.g. "buildconfigs"
+     * @param openShiftApi
+     *            whether the resource is served by the OpenShift API group
+     *            rather than the core Kubernetes API
+     * @param namespace
+     *            the namespace to list
+     * @param labelSelector
+     *            optional label selector
+     * @param fieldSelector
+     *            optional field selector
+     * @param handler
+     *            called for each page
+     * @return the resourceVersion of the list, to start a watch from
+     */
+    public static <T extends HasMetadata> String list(Class<T> type, String resource, boolean openShiftApi, String namespace,
+            Map<String, String> labelSelector, Map<String, String> fieldSelector, PageHandler<T> handler) throws Exception {
+        return list(type, resource, openShiftApi, namespace, labelSelector, fieldSelector, ApiRateLimiter.Priority.RELIST, handler);
+    }
+
+    /**
+     * Lists the objects of a resource type in pages, with the given priority
+     * rather than that of a relist
+     */
+    public static <T extends HasMetadata> String list(Class<T> type, String resource, boolean openShiftApi, String namespace,
+            Map<String, String> labelSelector, Map<String, String> fieldSelector, ApiRateLimiter.Priority priority,
+            PageHandler<T> handler) throws Exception {
+        ApiRateLimiter.Priority previous = ApiRateLimiter.setPriority(priority);
+        try {
+            return listPages(type, resource, openShiftApi, namespace, labelSelector, fieldSelector, handler);
+        } finally {
+            ApiRateLimiter.setPriority(previous);
+        }
+    }
+
+    private static <T extends HasMetadata> String listPages(Class<T> type, String resource, boolean openShiftApi, String namespace,
+            Map<String, String> labelSelector, Map<String, String> fieldSelector, PageHandler<T> handler) throws Exception {
+        int pageSize = getPageSize();
+        String continueToken = null;
+        String resourceVersion = null;
+        boolean restarted = false;
+        while (true) {
+            Request request = new Request.Builder().get()
+                    .url(listUrl(resource, openShiftApi, namespace, labelSelector, fieldSelector, pageSize, continueToken)).build();
+            Response response = getHttpClient().newCall(request).execute();
+            Page<T> page;
+            try {
+                if (!response.isSuccessful()) {
+                    if (response.code() == HTTP_GONE && continueToken != null && !restarted) {
+                        // the continue token expired while we were paging;
+                        // the only option is to start the list over
+                        LOGGER.info("continue token for " + resource + " in namespace " + namespace + " expired, restarting the list");
+                        restarted = true;
+                        continueToken = null;
+                        continue;
+                    }
+                    throw new KubernetesClientException("Failure listing " + resource + " in namespace " + namespace + ": " + response.code() + " "
+                            + response.message(), response.code(), null);
+                }
+                page = parsePage(response.body().byteStream(), type);
+            } finally {
+                response.body().close();
+            }
+            handler.onPage(page.items);
+            resourceVersion = page.resourceVersion;
+            continueToken = page.continueToken;
+            if (continueToken == null || continueToken.length() == 0) {
+                return resourceVersion;
+            }
+        }
+    }
+
+    /**
+     * Lists every page into one list, for callers that need all objects
+     * together
+     */
+    public static <T extends HasMetadata> String listAll(Class<T> type, String resource, boolean openShiftApi, String namespace,
+            Map<String, String> labelSelector, Map<String, String> fieldSelector, List<T> into) throws Exception {
+        // keyed by UID since a restarted list delivers earlier objects again
+        final Map<String, T> items = new LinkedHashMap<String, T>();
+        String resourceVersion = list(type, resource, openShiftApi, namespace, labelSelector, fieldSelector, new PageHandler<T>() {
+            @Override
+            public void onPage(List<T> page) {
+                for (T item : page) {
+                    items.put(item.getMetadata().getUid(), item);
+                }
+            }
+        });
+        into.addAll(items.values());
+        return resourceVersion;
+    }
+
+    static int getPageSize() {
+        GlobalPluginConfiguration config = GlobalPluginConfiguration.get();
+        if (config != null && config.getListPageSize() > 0) {
+            return config.getListPageSize();
+        }
+        return DEFAULT_PAGE_SIZE;
+    }
+
+    static HttpUrl listUrl(String resource, boolean openShiftApi, String namespace, Map<String, String> labelSelector,
+            Map<String, String> fieldSelector, int pageSize, String continueToken) throws IOException {
+        OpenShiftClient client = getAuthenticatedOpenShiftClient();
+        URL base = openShiftApi ? client.getOpenshiftUrl() : new URL(client.getMasterUrl(), "api/" + client.getApiVersion() + "/");
+        HttpUrl.Builder url = HttpUrl.get(base).newBuilder();
+        if (namespace != null && namespace.length() > 0) {
+            url.addPathSegment("namespaces").addPathSegment(namespace);
+        }
+        url.addPathSegment(resource);
+        if (labelSelector != null && !labelSelector.isEmpty()) {
+            url.addQueryParameter("labelSelector", selector(labelSelector));
+        }
+        if (fieldSelector != null && !fieldSelector.isEmpty()) {
+            url.addQueryParameter("fieldSelector", selector(fieldSelector));
+        }
+        if (pageSize > 0) {
+            url.addQueryParameter("limit", Integer.toString(pageSize));
+        }
+        if (continueToken != null) {
+            url.addQueryParameter("continue", continueToken);
+        }
+        return url.build();
+    }
+
+    static String selector(Map<String, String> terms) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> term : terms.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(term.getKey()).append('=').append(term.getValue());
+        }
+        return sb.toString();
+    }
+
+    static <T> Page<T> parsePage(InputStream in, Class<T> type) throws IOException {
+        Page<T> page = new Page<T>();
+        try (JsonParser parser = mapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("expected a list object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if ("metadata".equals(field) && token == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String metaField = parser.getCurrentName();
+                        parser.nextToken();
+                        if ("resourceVersion".equals(metaField)) {
+                            page.resourceVersion = parser.getValueAsString();
+                        } else if ("continue".equals(metaField)) {
+                            page.continueToken = parser.getValueAsString();
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                } else if ("items".equals(field) && token == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        page.items.add(mapper.readValue(parser, type));
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return page;
+    }
+
+    static class Page<T> {
+        final List<T> items = new ArrayList<T>();
+        String resourceVersion;
+        String continueToken;
+    }
+}
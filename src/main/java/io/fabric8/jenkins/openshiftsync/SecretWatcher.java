@@ -19,9 +19,9 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.triggers.SafeTimerTask;
 import io.fabric8.kubernetes.api.model.ObjectMeta;
 import io.fabric8.kubernetes.api.model.Secret;
-import io.fabric8.kubernetes.api.model.SecretList;
 import io.fabric8.kubernetes.client.Watcher.Action;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
@@ -37,6 +37,8 @@ import static java.util.logging.Level.SEVERE;
 public class SecretWatcher extends BaseWatcher {
     private ConcurrentHashMap<String, String> trackedSecrets;
 
+    private static final ResourceCache<Secret> secretCache = new ResourceCache<Secret>();
+
     private final Logger logger = Logger.getLogger(getClass().getName());
 
     @SuppressFBWarnings("EI_EXPOSE_REP2")
@@ -59,40 +61,64 @@ public class SecretWatcher extends BaseWatcher {
                     logger.fine("No Openshift Token credential defined.");
                     return;
                 }
-                for (String namespace : namespaces) {
-                    SecretList secrets = null;
+                for (String namespace : getWatchScopes()) {
+                    if (watches.get(namespace) != null && secretCache.hasSynced(namespacesOf(namespace))) {
+                        // the watch is live so the cache is current; resync
+                        // from it rather than listing from the API server
+                        onInitialSecrets(secretCache.list(namespacesOf(namespace)));
+                        continue;
+                    }
+                    String listResourceVersion = null;
                     try {
                         logger.fine("listing Secrets resources");
-                        secrets = getAuthenticatedOpenShiftClient().secrets()
-                                .inNamespace(namespace)
-                                .withLabel(Constants.OPENSHIFT_LABELS_SECRET_CREDENTIAL_SYNC, Constants.VALUE_SECRET_SYNC).list();
-                        onInitialSecrets(secrets);
+                        secretCache.beginReplace(namespacesOf(namespace));
+                        listResourceVersion = ResourceLister.list(Secret.class, "secrets", false, listNamespace(namespace),
+                                Collections.singletonMap(Constants.OPENSHIFT_LABELS_SECRET_CREDENTIAL_SYNC, Constants.VALUE_SECRET_SYNC), null, new ResourceLister.PageHandler<Secret>() {
+                                    @Override
+                                    public void onPage(List<Secret> items) {
+                                        List<Secret> watched = inWatchedNamespaces(items);
+                                        secretCache.addPage(watched);
+                                        onInitialSecrets(watched);
+                                    }
+                                });
+                        secretCache.endReplace(namespacesOf(namespace));
                         logger.fine("handled Secrets resources");
                     } catch (Exception e) {
                         logger.log(SEVERE, "Failed to load Secrets: " + e, e);
                     }
                     try {
                         String resourceVersion = "0";
-                        if (secrets == null) {
+                        if (listResourceVersion == null) {
                             logger.warning("Unable to get secret list; impacts resource version used for watch");
                         } else {
-                            resourceVersion = secrets.getMetadata()
-                                    .getResourceVersion();
+                            resourceVersion = listResourceVersion;
                         }
                         if (watches.get(namespace) == null) {
                             logger.info("creating Secret watch for namespace "
                                     + namespace + " and resource version"
                                     + resourceVersion);
-                            addWatch(namespace,
-                                    getAuthenticatedOpenShiftClient()
-                                    .secrets()
-                                    .inNamespace(namespace)
-                                    .withLabel(Constants.OPENSHIFT_LABELS_SECRET_CREDENTIAL_SYNC,
-                                            Constants.VALUE_SECRET_SYNC)
-                                            .withResourceVersion(
-                                                    resourceVersion)
-                                                    .watch(new WatcherCallback<Secret>(SecretWatcher.this,
-                                                            namespace)));
+                            WatcherCallback<Secret> callback = new WatcherCallback<Secret>(SecretWatcher.this, namespace);
+                            if (ALL_NAMESPACES.equals(namespace)) {
+                                addWatch(namespace,
+                                        getAuthenticatedOpenShiftClient()
+                                        .secrets()
+                                        .inAnyNamespace()
+                                        .withLabel(Constants.OPENSHIFT_LABELS_SECRET_CREDENTIAL_SYNC,
+                                                Constants.VALUE_SECRET_SYNC)
+                                                .withResourceVersion(
+                                                        resourceVersion)
+                                                        .watch(callback));
+                            } else {
+                                addWatch(namespace,
+                                        getAuthenticatedOpenShiftClient()
+                                        .secrets()
+                                        .inNamespace(namespace)
+                                        .withLabel(Constants.OPENSHIFT_LABELS_SECRET_CREDENTIAL_SYNC,
+                                                Constants.VALUE_SECRET_SYNC)
+                                                .withResourceVersion(
+                                                        resourceVersion)
+                                                        .watch(callback));
+                            }
                         }
                     } catch (Exception e) {
                         logger.log(SEVERE, "Failed to load Secrets: " + e, e);
@@ -109,12 +135,9 @@ public class SecretWatcher extends BaseWatcher {
         logger.info("Now handling startup secrets!!");
     }
 
-    private void onInitialSecrets(SecretList secrets) {
-        if (secrets == null)
-            return;
+    private void onInitialSecrets(List<Secret> items) {
         if (trackedSecrets == null)
             trackedSecrets = new ConcurrentHashMap<String, String>();
-        List<Secret> items = secrets.getItems();
         if (items != null) {
             for (Secret secret : items) {
                 try {
@@ -157,9 +180,15 @@ public class SecretWatcher extends BaseWatcher {
     @Override
     public <T> void eventReceived(io.fabric8.kubernetes.client.Watcher.Action action, T resource) {
         Secret secret = (Secret)resource;
+        secretCache.onEvent(action, secret);
         eventReceived(action, secret);
     }
 
+    @Override
+    public ResourceCache<Secret> getCache() {
+        return secretCache;
+    }
+
     private void upsertCredential(final Secret secret) throws Exception {
         if (validSecret(secret)) {
             CredentialsUtils.upsertCredential(secret);
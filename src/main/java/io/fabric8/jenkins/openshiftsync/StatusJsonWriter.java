@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import com.cloudbees.workflow.rest.external.AtomFlowNodeExt;
+import com.cloudbees.workflow.rest.external.FlowNodeExt;
+import com.cloudbees.workflow.rest.external.RunExt;
+import com.cloudbees.workflow.rest.external.StageNodeExt;
+import com.cloudbees.workflow.rest.hal.Link;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Writes the JSON of the build status annotations. The writer is shared, so
+ * its serializers are looked up once rather than for every update, and
+ * Jackson recycles its output buffers per thread. Relative links of the
+ * stages and flow nodes are made absolute with plain string operations.
+ */
+public class StatusJsonWriter {
+
+    // thread safe and immutable once created
+    private static final ObjectWriter WRITER = new ObjectMapper().writer();
+
+    public static String toJson(Object value) throws JsonProcessingException {
+        return WRITER.writeValueAsString(value);
+    }
+
+    /**
+     * The prefix relative links of a run are appended to: the root URL
+     * without its trailing slashes
+     */
+    public static String urlPrefix(String rootUrl) {
+        if (rootUrl == null) {
+            return "";
+        }
+        int end = rootUrl.length();
+        while (end > 0 && rootUrl.charAt(end - 1) == '/') {
+            end--;
+        }
+        return rootUrl.substring(0, end);
+    }
+
+    /**
+     * Makes an href absolute unless it already is
+     */
+    public static String absolute(String prefix, String href) {
+        if (href == null || href.startsWith("http://") || href.startsWith("https://")) {
+            return href;
+        }
+        if (href.startsWith("/")) {
+            return prefix.concat(href);
+        }
+        return prefix + "/" + href;
+    }
+
+    /**
+     * Makes the links of the run, its stages and their flow nodes absolute
+     */
+    public static void absolutizeLinks(RunExt run, String prefix) {
+        absolutize(run.get_links().self, prefix);
+        for (StageNodeExt stage : run.getStages()) {
+            absolutizeLinks(stage, prefix);
+        }
+    }
+
+    static void absolutizeLinks(StageNodeExt stage, String prefix) {
+        absolutize(stage.get_links(), prefix);
+        for (AtomFlowNodeExt node : stage.getStageFlowNodes()) {
+            absolutize(node.get_links(), prefix);
+        }
+    }
+
+    private static void absolutize(FlowNodeExt.FlowNodeLinks links, String prefix) {
+        absolutize(links.self, prefix);
+        absolutize(links.getLog(), prefix);
+    }
+
+    private static void absolutize(Link link, String prefix) {
+        if (link == null) {
+            return;
+        }
+        String href = absolute(prefix, link.href);
+        if (href != link.href) {
+            link.setHref(href);
+        }
+    }
+}
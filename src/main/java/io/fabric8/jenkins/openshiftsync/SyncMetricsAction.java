@@ -0,0 +1,115 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import hudson.Extension;
+import hudson.model.RootAction;
+import jenkins.model.Jenkins;
+
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Serves the plugin's metrics as JSON at {@code /openshift-sync-metrics/} to
+ * administrators: the watcher, API call and trigger latency counts also
+ * exposed over JMX, the rate limiter, and the depth of the plugin's queues
+ * and caches.
+ */
+@Extension
+public class SyncMetricsAction implements RootAction {
+
+    // how many of the most contended build config UIDs are listed
+    private static final int MOST_CONTENDED_UIDS = 10;
+
+    @Override
+    public String getIconFileName() {
+        // not shown in the side panel
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "OpenShift Sync Metrics";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "openshift-sync-metrics";
+    }
+
+    public void doIndex(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        Jenkins.getActiveInstance().checkPermission(Jenkins.ADMINISTER);
+        rsp.setContentType("application/json;charset=UTF-8");
+        rsp.getWriter().write(StatusJsonWriter.toJson(snapshot()));
+    }
+
+    static Map<String, Object> snapshot() {
+        Map<String, Object> metrics = new LinkedHashMap<String, Object>();
+        metrics.put("watchers", WatcherMetrics.getStats());
+        metrics.put("apiCalls", ApiMetrics.getStats());
+        metrics.put("triggerLatency", TriggerLatency.getStats());
+        metrics.put("rateLimiter", rateLimiter());
+        metrics.put("queues", queues());
+        return metrics;
+    }
+
+    private static Map<String, Object> rateLimiter() {
+        ApiRateLimiter limiter = ApiRateLimiter.get();
+        Map<String, Object> priorities = new LinkedHashMap<String, Object>();
+        for (ApiRateLimiter.Priority priority : ApiRateLimiter.Priority.values()) {
+            LatencyHistogram waits = limiter.getWaitTimes(priority);
+            Map<String, Object> values = new LinkedHashMap<String, Object>();
+            values.put("queueDepth", limiter.getQueueDepth(priority));
+            values.put("calls", limiter.getCallCount(priority));
+            values.put("waitMeanMillis", waits.getMeanMillis());
+            values.put("waitP99Millis", waits.getPercentileMillis(0.99));
+            values.put("waitMaxMillis", waits.getMaxMillis());
+            priorities.put(priority.name(), values);
+        }
+        return priorities;
+    }
+
+    private static Map<String, Object> queues() {
+        Map<String, Object> queues = new LinkedHashMap<String, Object>();
+        queues.put("statusOutboxPending", BuildStatusOutbox.getPendingCount());
+        queues.put("statusOutboxSent", BuildStatusOutbox.getSentCount());
+        queues.put("statusOutboxMerged", BuildStatusOutbox.getMergedCount());
+        queues.put("statusOutboxDropped", BuildStatusOutbox.getDroppedCount());
+        queues.put("buildInstantiatorPending", BuildInstantiator.getPendingCount());
+        queues.put("buildInstantiatorSubmitted", BuildInstantiator.getSubmittedCount());
+        queues.put("buildInstantiatorSucceeded", BuildInstantiator.getSucceededCount());
+        queues.put("buildInstantiatorFailed", BuildInstantiator.getFailedCount());
+        queues.put("buildInstantiatorRetried", BuildInstantiator.getRetriedCount());
+        queues.put("buildInstantiatorRejected", BuildInstantiator.getRejectedCount());
+        queues.put("buildInstantiatorP99Millis", BuildInstantiator.getLatency().getPercentileMillis(0.99));
+        queues.put("parkedBuilds", ParkedBuilds.getParkedCount());
+        queues.put("parkedBuildConfigs", ParkedBuilds.getParkedBuildConfigCount());
+        queues.put("buildRunIndex", BuildRunIndex.size());
+        queues.put("buildConfigFingerprints", BuildConfigFingerprints.size());
+        queues.put("jenkinsUrlCache", JenkinsUrlCache.size());
+        queues.put("watchEvents", WatchEventDispatcher.getQueuedCounts());
+        queues.put("uidLockAcquisitions", UidLocks.getAcquisitions());
+        queues.put("uidLockContended", UidLocks.getContendedAcquisitions());
+        queues.put("uidLockTimeouts", UidLocks.getTimeouts());
+        queues.put("uidLockWaitMillis", UidLocks.getWaitTimeMillis());
+        queues.put("uidLockMostContended", UidLocks.getMostContended(MOST_CONTENDED_UIDS));
+        return queues;
+    }
+}
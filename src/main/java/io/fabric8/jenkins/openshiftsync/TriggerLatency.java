@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Aggregates, per namespace, the time from the creation of an OpenShift build
+ * to the start of its Jenkins run from the timestamps on its
+ * {@link BuildCause}, split into the time until the plugin received the
+ * build, until the run was submitted to the Jenkins queue and until an
+ * executor started it; and the time from the start to the first status
+ * update written back to the build. Each namespace's percentiles are
+ * registered as an MXBean named
+ * {@code io.fabric8.jenkins.openshiftsync:type=TriggerLatency,namespace=..}.
+ */
+public class TriggerLatency {
+
+    private static final ConcurrentHashMap<String, Stats> byNamespace = new ConcurrentHashMap<String, Stats>();
+
+    /**
+     * Records the latencies up to the start of the run of a build
+     */
+    public static void started(BuildCause cause) {
+        Stats stats = get(cause.getNamespace());
+        record(stats.total, cause.getCreatedAt(), cause.getStartedAt());
+        record(stats.watch, cause.getCreatedAt(), cause.getReceivedAt());
+        record(stats.submit, cause.getReceivedAt(), cause.getQueuedAt());
+        record(stats.queue, cause.getQueuedAt(), cause.getStartedAt());
+    }
+
+    /**
+     * Records the latency of the first status update of the run of a build
+     */
+    public static void statusUpdated(BuildCause cause) {
+        record(get(cause.getNamespace()).statusUpdate, cause.getStartedAt(), cause.getFirstStatusUpdateAt());
+    }
+
+    // timestamps of 0 are unknown, e.g. of runs started before an upgrade
+    private static void record(LatencyHistogram histogram, long from, long to) {
+        if (from > 0 && to > 0) {
+            histogram.record(to - from);
+        }
+    }
+
+    static Stats get(String namespace) {
+        String key = String.valueOf(namespace);
+        Stats stats = byNamespace.get(key);
+        if (stats == null) {
+            Stats created = new Stats();
+            stats = byNamespace.putIfAbsent(key, created);
+            if (stats == null) {
+                stats = created;
+                JmxUtils.register(created, "TriggerLatency", "namespace", key);
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * The latencies of each namespace
+     */
+    public static Map<String, Stats> getStats() {
+        return new TreeMap<String, Stats>(byNamespace);
+    }
+
+    /**
+     * The percentiles of the latencies of a namespace, in millis
+     */
+    public interface StatsMXBean {
+        long getStarted();
+
+        long getTotalP50Millis();
+
+        long getTotalP90Millis();
+
+        long getTotalP99Millis();
+
+        long getWatchP50Millis();
+
+        long getWatchP99Millis();
+
+        long getSubmitP50Millis();
+
+        long getSubmitP99Millis();
+
+        long getQueueP50Millis();
+
+        long getQueueP99Millis();
+
+        long getStatusUpdateP50Millis();
+
+        long getStatusUpdateP99Millis();
+    }
+
+    public static class Stats implements StatsMXBean {
+        // creation to run start
+        final LatencyHistogram total = new LatencyHistogram();
+        // creation to receipt by the plugin
+        final LatencyHistogram watch = new LatencyHistogram();
+        // receipt to submission to the Jenkins queue
+        final LatencyHistogram submit = new LatencyHistogram();
+        // submission to run start: the queue and executor provisioning
+        final LatencyHistogram queue = new LatencyHistogram();
+        // run start to the first status written back
+        final LatencyHistogram statusUpdate = new LatencyHistogram();
+
+        public long getStarted() {
+            return total.getCount();
+        }
+
+        public long getTotalP50Millis() {
+            return total.getPercentileMillis(0.5);
+        }
+
+        public long getTotalP90Millis() {
+            return total.getPercentileMillis(0.9);
+        }
+
+        public long getTotalP99Millis() {
+            return total.getPercentileMillis(0.99);
+        }
+
+        public long getWatchP50Millis() {
+            return watch.getPercentileMillis(0.5);
+        }
+
+        public long getWatchP99Millis() {
+            return watch.getPercentileMillis(0.99);
+        }
+
+        public long getSubmitP50Millis() {
+            return submit.getPercentileMillis(0.5);
+        }
+
+        public long getSubmitP99Millis() {
+            return submit.getPercentileMillis(0.99);
+        }
+
+        public long getQueueP50Millis() {
+            return queue.getPercentileMillis(0.5);
+        }
+
+        public long getQueueP99Millis() {
+            return queue.getPercentileMillis(0.99);
+        }
+
+        public long getStatusUpdateP50Millis() {
+            return statusUpdate.getPercentileMillis(0.5);
+        }
+
+        public long getStatusUpdateP99Millis() {
+            return statusUpdate.getPercentileMillis(0.99);
+        }
+    }
+}
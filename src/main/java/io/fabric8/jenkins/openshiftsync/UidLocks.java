@@ -0,0 +1,259 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped, reentrant locks keyed by API object UID, used to serialize the
+ * work done for one BuildConfig (job upserts and deletes, build triggers and
+ * run deletes). This replaces synchronizing on interned UID strings, which
+ * filled the JVM string table with every UID ever seen and shared monitors
+ * with any other code locking interned strings.
+ *
+ * Contended acquisitions are counted against the UID holding the lock, so
+ * that BuildConfigs serializing the sync can be identified; the most
+ * contended ones are reported by {@link SyncMetricsAction}. Several UIDs
+ * share a stripe, so the holder may be a different UID than the one
+ * waiting.
+ */
+public final class UidLocks {
+
+    static final int STRIPES = stripeCount(Integer.getInteger(UidLocks.class.getName() + ".stripes", 256));
+
+    // how long tryLock waits by default; 0 or less means wait for as long as
+    // it takes. UIDs share stripes, so with a timeout a UID can also be
+    // deferred because an unrelated UID on its stripe holds the lock; more
+    // stripes make that less likely
+    static final long DEFAULT_TIMEOUT_MILLIS = Long.getLong(UidLocks.class.getName() + ".timeoutMillis", 0L);
+
+    // how many UIDs contention is counted for; further UIDs only count
+    // towards the totals
+    static final int MAX_TRACKED_UIDS = Integer.getInteger(UidLocks.class.getName() + ".maxTrackedUids", 1000);
+
+    private static final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    // the UID holding each stripe, if any
+    private static final AtomicReferenceArray<String> holders = new AtomicReferenceArray<String>(STRIPES);
+
+    private static final ConcurrentHashMap<String, AtomicLong> contentionByUid = new ConcurrentHashMap<String, AtomicLong>();
+    private static final AtomicLong acquisitions = new AtomicLong();
+    private static final AtomicLong contended = new AtomicLong();
+    private static final AtomicLong timeouts = new AtomicLong();
+    private static final AtomicLong waitNanos = new AtomicLong();
+
+    private UidLocks() {
+    }
+
+    /**
+     * Blocks until the lock for the UID is held
+     */
+    public static void lock(String uid) {
+        int stripe = stripeOf(uid);
+        ReentrantLock lock = locks[stripe];
+        acquisitions.incrementAndGet();
+        if (!lock.tryLock()) {
+            long start = System.nanoTime();
+            contended(stripe);
+            lock.lock();
+            waitNanos.addAndGet(System.nanoTime() - start);
+        }
+        held(stripe, uid);
+    }
+
+    /**
+     * Waits for the lock for the UID for the configured default timeout
+     *
+     * @return false if the lock could not be acquired in time
+     */
+    public static boolean tryLock(String uid) {
+        if (DEFAULT_TIMEOUT_MILLIS <= 0) {
+            lock(uid);
+            return true;
+        }
+        return tryLock(uid, DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Waits up to the timeout for the lock for the UID
+     *
+     * @return false if the lock could not be acquired in time
+     */
+    public static boolean tryLock(String uid, long timeout, TimeUnit unit) {
+        int stripe = stripeOf(uid);
+        ReentrantLock lock = locks[stripe];
+        acquisitions.incrementAndGet();
+        if (lock.tryLock()) {
+            held(stripe, uid);
+            return true;
+        }
+        long start = System.nanoTime();
+        contended(stripe);
+        boolean acquired = false;
+        try {
+            acquired = lock.tryLock(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        waitNanos.addAndGet(System.nanoTime() - start);
+        if (acquired) {
+            held(stripe, uid);
+        } else {
+            timeouts.incrementAndGet();
+        }
+        return acquired;
+    }
+
+    public static void unlock(String uid) {
+        int stripe = stripeOf(uid);
+        ReentrantLock lock = locks[stripe];
+        if (lock.getHoldCount() == 1) {
+            holders.set(stripe, null);
+        }
+        lock.unlock();
+    }
+
+    /**
+     * Drops the contention counter of a UID whose object is gone
+     */
+    public static void forget(String uid) {
+        if (uid != null) {
+            contentionByUid.remove(uid);
+        }
+    }
+
+    /**
+     * The number of times each UID held its lock while another acquisition
+     * had to wait for it
+     */
+    public static Map<String, Long> getContentionCounts() {
+        Map<String, Long> counts = new HashMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : contentionByUid.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return counts;
+    }
+
+    /**
+     * The UIDs that made others wait for their lock most often, most
+     * contended first
+     *
+     * @param limit
+     *            how many UIDs to return at most
+     */
+    public static Map<String, Long> getMostContended(int limit) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<Map.Entry<String, Long>>(getContentionCounts().entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+            @Override
+            public int compare(Map.Entry<String, Long> a, Map.Entry<String, Long> b) {
+                return b.getValue().compareTo(a.getValue());
+            }
+        });
+        Map<String, Long> result = new LinkedHashMap<String, Long>();
+        for (Map.Entry<String, Long> entry : entries) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    public static long getAcquisitions() {
+        return acquisitions.get();
+    }
+
+    public static long getContendedAcquisitions() {
+        return contended.get();
+    }
+
+    public static long getTimeouts() {
+        return timeouts.get();
+    }
+
+    public static long getWaitTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(waitNanos.get());
+    }
+
+    static ReentrantLock lockFor(String uid) {
+        return locks[stripeOf(uid)];
+    }
+
+    static int stripeOf(String uid) {
+        if (uid == null) {
+            return 0;
+        }
+        // spread the hash a bit, as String hash codes of UIDs which differ in
+        // the last characters only differ in the low bits
+        int h = uid.hashCode();
+        h ^= (h >>> 16);
+        return h & (STRIPES - 1);
+    }
+
+    private static void held(int stripe, String uid) {
+        // the outermost acquisition of a reentrant lock names the holder
+        if (locks[stripe].getHoldCount() == 1) {
+            holders.set(stripe, uid);
+        }
+    }
+
+    // charges the wait to the UID holding the stripe, which may have
+    // released it since
+    private static void contended(int stripe) {
+        contended.incrementAndGet();
+        String uid = holders.get(stripe);
+        if (uid == null) {
+            return;
+        }
+        AtomicLong count = contentionByUid.get(uid);
+        if (count == null) {
+            if (contentionByUid.size() >= MAX_TRACKED_UIDS) {
+                return;
+            }
+            AtomicLong created = new AtomicLong();
+            count = contentionByUid.putIfAbsent(uid, created);
+            if (count == null) {
+                count = created;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    private static int stripeCount(int requested) {
+        // round up to a power of two so the stripe can be picked with a mask
+        int count = 1;
+        while (count < requested && count < (1 << 16)) {
+            count <<= 1;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Moves the handling of watch events off the HTTP client thread that delivers
+ * them. Events are hashed by key (the object UID) onto a fixed set of single
+ * threaded lanes, so the events for one object are still handled in the order
+ * they arrived while independent objects are handled in parallel.
+ *
+ * Each lane has a bounded queue; when it is full the delivering thread blocks
+ * until there is room, pushing back on the watch rather than growing the heap.
+ */
+public class WatchEventDispatcher {
+    private static final Logger LOGGER = Logger.getLogger(WatchEventDispatcher.class.getName());
+
+    static final int DEFAULT_LANES = Integer.getInteger(WatchEventDispatcher.class.getName() + ".lanes",
+            Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors())));
+    static final int DEFAULT_QUEUE_SIZE = Integer.getInteger(WatchEventDispatcher.class.getName() + ".queueSize", 1000);
+
+    // the dispatchers not shut down, by name, for the metrics
+    private static final ConcurrentHashMap<String, WatchEventDispatcher> dispatchers = new ConcurrentHashMap<String, WatchEventDispatcher>();
+
+    private final String name;
+    private final ThreadPoolExecutor[] lanes;
+
+    public WatchEventDispatcher(String name) {
+        this(name, DEFAULT_LANES, DEFAULT_QUEUE_SIZE);
+    }
+
+    public WatchEventDispatcher(String name, int laneCount, int queueSize) {
+        if (laneCount < 1) {
+            laneCount = 1;
+        }
+        if (queueSize < 1) {
+            queueSize = 1;
+        }
+        this.name = name;
+        lanes = new ThreadPoolExecutor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueSize),
+                    new NamingThreadFactory(new DaemonThreadFactory(), "OpenShift " + name + " event lane " + i), new BlockWhenFull());
+        }
+        dispatchers.put(name, this);
+    }
+
+    /**
+     * Queues the task on the lane owning the key, blocking while that lane is
+     * full
+     */
+    public void dispatch(String key, Runnable task) {
+        lanes[laneFor(key, lanes.length)].execute(task);
+    }
+
+    /**
+     * The number of events waiting across all lanes
+     */
+    public int getQueuedCount() {
+        int count = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            count += lane.getQueue().size();
+        }
+        return count;
+    }
+
+    /**
+     * The number of events waiting in each dispatcher not shut down, by
+     * dispatcher name
+     */
+    public static Map<String, Integer> getQueuedCounts() {
+        Map<String, Integer> counts = new TreeMap<String, Integer>();
+        for (Map.Entry<String, WatchEventDispatcher> entry : dispatchers.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().getQueuedCount());
+        }
+        return counts;
+    }
+
+    public void shutdown() {
+        dispatchers.remove(name, this);
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+    }
+
+    static int laneFor(String key, int laneCount) {
+        if (key == null) {
+            return 0;
+        }
+        return (key.hashCode() & Integer.MAX_VALUE) % laneCount;
+    }
+
+    private static class BlockWhenFull implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                LOGGER.fine("dropping watch event received after the dispatcher was shut down");
+                return;
+            }
+            try {
+                executor.getQueue().put(r);
+            } catch (InterruptedException e) {
+                LOGGER.log(Level.WARNING, "interrupted while waiting to queue a watch event", e);
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -31,7 +31,7 @@ public class WatcherCallback<T> implements Watcher<T> {
 
     @Override
     public void eventReceived(io.fabric8.kubernetes.client.Watcher.Action action, T resource) {
-        watcher.eventReceived(action, resource);
+        watcher.dispatch(action, resource);
     }
 
     @Override
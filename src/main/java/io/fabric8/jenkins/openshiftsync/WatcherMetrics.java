@@ -0,0 +1,260 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.ObjectMeta;
+import io.fabric8.kubernetes.client.Watcher.Action;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts, per watcher type and namespace, the watch events received by
+ * action, how long they waited in their event lane and how long their
+ * handler took, the lag between the creation of an added object and its
+ * handling, the events still being handled, the watch reconnects, and how
+ * long the periodic relists of the watcher type take. Each set of counts is
+ * registered as an MXBean named
+ * {@code io.fabric8.jenkins.openshiftsync:type=Watcher,watcher=..,namespace=..}.
+ */
+public class WatcherMetrics {
+
+    // the namespace of the counts that are not per namespace
+    static final String ALL_NAMESPACES = BaseWatcher.ALL_NAMESPACES;
+
+    private static final ConcurrentHashMap<String, Stats> stats = new ConcurrentHashMap<String, Stats>();
+
+    public static Stats get(String watcher, String namespace) {
+        if (namespace == null) {
+            namespace = ALL_NAMESPACES;
+        }
+        String key = watcher + " " + namespace;
+        Stats result = stats.get(key);
+        if (result == null) {
+            Stats created = new Stats();
+            result = stats.putIfAbsent(key, created);
+            if (result == null) {
+                result = created;
+                JmxUtils.register(created, "Watcher", "watcher", watcher, "namespace", namespace);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The counts of an object's namespace
+     */
+    static Stats getFor(String watcher, Object resource) {
+        String namespace = null;
+        if (resource instanceof HasMetadata) {
+            ObjectMeta meta = ((HasMetadata) resource).getMetadata();
+            if (meta != null) {
+                namespace = meta.getNamespace();
+            }
+        }
+        return get(watcher, namespace);
+    }
+
+    /**
+     * All counts, keyed by watcher type and namespace separated by a space
+     */
+    public static Map<String, Stats> getStats() {
+        return new TreeMap<String, Stats>(stats);
+    }
+
+    /**
+     * The attributes of the counts of a watcher type and namespace
+     */
+    public interface StatsMXBean {
+        long getAdded();
+
+        long getModified();
+
+        long getDeleted();
+
+        long getErrors();
+
+        int getInFlight();
+
+        long getReconnects();
+
+        long getHandlerMeanMillis();
+
+        long getHandlerP99Millis();
+
+        long getHandlerMaxMillis();
+
+        long getQueueLagP99Millis();
+
+        long getQueueLagMaxMillis();
+
+        long getCreationLagP50Millis();
+
+        long getCreationLagP99Millis();
+
+        long getRelists();
+
+        long getRelistMeanMillis();
+
+        long getRelistMaxMillis();
+    }
+
+    public static class Stats implements StatsMXBean {
+        private final AtomicLong added = new AtomicLong();
+        private final AtomicLong modified = new AtomicLong();
+        private final AtomicLong deleted = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong reconnects = new AtomicLong();
+        final LatencyHistogram handler = new LatencyHistogram();
+        final LatencyHistogram queueLag = new LatencyHistogram();
+        final LatencyHistogram creationLag = new LatencyHistogram();
+        final LatencyHistogram relist = new LatencyHistogram();
+
+        /**
+         * Counts an event received from the watch; it is in flight until
+         * {@link #handled(long, long, long)} is called
+         *
+         * @param now
+         *            the current time in millis, which the creation of an
+         *            added object is compared with
+         */
+        void received(Action action, Object resource, long now) {
+            switch (action) {
+            case ADDED:
+                added.incrementAndGet();
+                recordCreationLag(resource, now);
+                break;
+            case MODIFIED:
+                modified.incrementAndGet();
+                break;
+            case DELETED:
+                deleted.incrementAndGet();
+                break;
+            default:
+                errors.incrementAndGet();
+            }
+            inFlight.incrementAndGet();
+        }
+
+        /**
+         * Counts the handling of an event
+         *
+         * @param receivedAt
+         *            when the event was received, in nanos
+         * @param startedAt
+         *            when its handler was called, in nanos
+         * @param finishedAt
+         *            when its handler returned, in nanos
+         */
+        void handled(long receivedAt, long startedAt, long finishedAt) {
+            inFlight.decrementAndGet();
+            queueLag.record((startedAt - receivedAt) / 1000000L);
+            handler.record((finishedAt - startedAt) / 1000000L);
+        }
+
+        void reconnected() {
+            reconnects.incrementAndGet();
+        }
+
+        void relisted(long millis) {
+            relist.record(millis);
+        }
+
+        private void recordCreationLag(Object resource, long now) {
+            if (!(resource instanceof HasMetadata)) {
+                return;
+            }
+            ObjectMeta meta = ((HasMetadata) resource).getMetadata();
+            if (meta == null || meta.getCreationTimestamp() == null) {
+                return;
+            }
+            try {
+                creationLag.record(now - OpenShiftUtils.parseTimestamp(meta.getCreationTimestamp()));
+            } catch (IllegalArgumentException e) {
+                // not a timestamp we can use
+            }
+        }
+
+        public long getAdded() {
+            return added.get();
+        }
+
+        public long getModified() {
+            return modified.get();
+        }
+
+        public long getDeleted() {
+            return deleted.get();
+        }
+
+        public long getErrors() {
+            return errors.get();
+        }
+
+        public int getInFlight() {
+            return inFlight.get();
+        }
+
+        public long getReconnects() {
+            return reconnects.get();
+        }
+
+        public long getHandlerMeanMillis() {
+            return handler.getMeanMillis();
+        }
+
+        public long getHandlerP99Millis() {
+            return handler.getPercentileMillis(0.99);
+        }
+
+        public long getHandlerMaxMillis() {
+            return handler.getMaxMillis();
+        }
+
+        public long getQueueLagP99Millis() {
+            return queueLag.getPercentileMillis(0.99);
+        }
+
+        public long getQueueLagMaxMillis() {
+            return queueLag.getMaxMillis();
+        }
+
+        public long getCreationLagP50Millis() {
+            return creationLag.getPercentileMillis(0.5);
+        }
+
+        public long getCreationLagP99Millis() {
+            return creationLag.getPercentileMillis(0.99);
+        }
+
+        public long getRelists() {
+            return relist.getCount();
+        }
+
+        public long getRelistMeanMillis() {
+            return relist.getMeanMillis();
+        }
+
+        public long getRelistMaxMillis() {
+            return relist.getMaxMillis();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import okhttp3.HttpUrl;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class ApiMetricsTest {
+  private static final String MASTER = "https://openshift.default.svc";
+
+  @Test
+  public void testClassify() throws Exception {
+    assertClassified("list builds ns", "GET", "/oapi/v1/namespaces/ns/builds?limit=500");
+    assertClassified("get buildconfigs ns", "GET", "/oapi/v1/namespaces/ns/buildconfigs/bc");
+    assertClassified("watch builds ns", "GET", "/oapi/v1/namespaces/ns/builds?watch=true");
+    assertClassified("watch builds -", "GET", "/oapi/v1/watch/builds");
+    assertClassified("patch builds ns", "PATCH", "/oapi/v1/namespaces/ns/builds/bc-1");
+    assertClassified("create buildconfigs/instantiate ns", "POST", "/oapi/v1/namespaces/ns/buildconfigs/bc/instantiate");
+    assertClassified("list configmaps ns", "GET", "/api/v1/namespaces/ns/configmaps");
+    assertClassified("get namespaces -", "GET", "/api/v1/namespaces/ns");
+    assertClassified("list routes ns", "GET", "/apis/route.openshift.io/v1/namespaces/ns/routes");
+  }
+
+  private static void assertClassified(String expected, String method, String path) {
+    assertArrayEquals(expected.split(" "), ApiMetrics.classify(method, HttpUrl.parse(MASTER + path)));
+  }
+}
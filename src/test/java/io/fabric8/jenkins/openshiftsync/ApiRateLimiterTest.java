@@ -0,0 +1,84 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import okhttp3.HttpUrl;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ApiRateLimiterTest {
+  @Test
+  public void testWatchesAreNotLimited() throws Exception {
+    assertTrue(ApiRateLimiter.isWatch(HttpUrl.parse("https://openshift.default.svc/oapi/v1/namespaces/ns/builds?watch=true&resourceVersion=5")));
+    assertTrue(ApiRateLimiter.isWatch(HttpUrl.parse("https://openshift.default.svc/oapi/v1/watch/namespaces/ns/builds")));
+    assertFalse(ApiRateLimiter.isWatch(HttpUrl.parse("https://openshift.default.svc/oapi/v1/namespaces/ns/builds?limit=500")));
+  }
+
+  @Test
+  public void testSetPriorityReturnsPrevious() throws Exception {
+    assertEquals(ApiRateLimiter.Priority.NORMAL, ApiRateLimiter.getPriority());
+    ApiRateLimiter.Priority previous = ApiRateLimiter.setPriority(ApiRateLimiter.Priority.RELIST);
+    try {
+      assertEquals(ApiRateLimiter.Priority.NORMAL, previous);
+      assertEquals(ApiRateLimiter.Priority.RELIST, ApiRateLimiter.getPriority());
+    } finally {
+      ApiRateLimiter.setPriority(previous);
+    }
+    assertEquals(ApiRateLimiter.Priority.NORMAL, ApiRateLimiter.getPriority());
+  }
+
+  @Test(timeout = 10000)
+  public void testHigherPriorityGoesFirst() throws Exception {
+    final ApiRateLimiter limiter = new ApiRateLimiter(5, 1);
+    // takes the only token
+    limiter.acquire(ApiRateLimiter.Priority.NORMAL);
+
+    final List<ApiRateLimiter.Priority> order = Collections.synchronizedList(new ArrayList<ApiRateLimiter.Priority>());
+    Thread relist = acquireInThread(limiter, ApiRateLimiter.Priority.RELIST, order);
+    while (limiter.getQueueDepth(ApiRateLimiter.Priority.RELIST) == 0) {
+      Thread.sleep(1);
+    }
+    Thread urgent = acquireInThread(limiter, ApiRateLimiter.Priority.URGENT, order);
+    relist.join();
+    urgent.join();
+    assertEquals(ApiRateLimiter.Priority.URGENT, order.get(0));
+    assertEquals(ApiRateLimiter.Priority.RELIST, order.get(1));
+  }
+
+  private static Thread acquireInThread(final ApiRateLimiter limiter, final ApiRateLimiter.Priority priority,
+      final List<ApiRateLimiter.Priority> order) {
+    Thread thread = new Thread() {
+      @Override
+      public void run() {
+        try {
+          limiter.acquire(priority);
+          order.add(priority);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+    thread.start();
+    return thread;
+  }
+}
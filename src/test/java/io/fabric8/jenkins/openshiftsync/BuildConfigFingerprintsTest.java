@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import io.fabric8.openshift.api.model.BuildConfig;
+import io.fabric8.openshift.api.model.BuildConfigBuilder;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class BuildConfigFingerprintsTest {
+  @Test
+  public void testIgnoresResourceVersionAndStatus() throws Exception {
+    BuildConfig bc = buildConfig("1", "node('maven') { sh 'mvn install' }", "bar");
+    BuildConfig rebuilt = new BuildConfigBuilder(buildConfig("7", "node('maven') { sh 'mvn install' }", "bar")).withNewStatus()
+        .withLastVersion(6L).endStatus().build();
+    assertEquals(BuildConfigFingerprints.fingerprint(bc, true), BuildConfigFingerprints.fingerprint(rebuilt, true));
+  }
+
+  @Test
+  public void testChangesWithTheSpec() throws Exception {
+    long fingerprint = BuildConfigFingerprints.fingerprint(buildConfig("1", "node { }", "bar"), true);
+    assertNotEquals(fingerprint, BuildConfigFingerprints.fingerprint(buildConfig("2", "node { echo 'hi' }", "bar"), true));
+    assertNotEquals(fingerprint, BuildConfigFingerprints.fingerprint(buildConfig("2", "node { }", "baz"), true));
+    assertNotEquals(fingerprint, BuildConfigFingerprints.fingerprint(buildConfig("1", "node { }", "bar"), false));
+  }
+
+  @Test
+  public void testKeepsAdjacentFieldsApart() throws Exception {
+    assertNotEquals(BuildConfigFingerprints.add(BuildConfigFingerprints.add(0, "ab"), "c"),
+        BuildConfigFingerprints.add(BuildConfigFingerprints.add(0, "a"), "bc"));
+    assertNotEquals(BuildConfigFingerprints.add(0, null), BuildConfigFingerprints.add(0, ""));
+  }
+
+  private BuildConfig buildConfig(String resourceVersion, String jenkinsfile, String foo) {
+    return new BuildConfigBuilder().withNewMetadata().withNamespace("ns1").withName("bc1").withUid("uid1")
+        .withResourceVersion(resourceVersion).endMetadata().withNewSpec().withRunPolicy("Serial").withNewStrategy()
+        .withType("JenkinsPipeline").withNewJenkinsPipelineStrategy().withJenkinsfile(jenkinsfile).addNewEnv()
+        .withName("FOO").withValue(foo).endEnv().endJenkinsPipelineStrategy().endStrategy().endSpec().build();
+  }
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BuildInstantiatorTest {
+  @Test
+  public void testOnlyCallsThatCreatedNothingAreRetriedBlindly() throws Exception {
+    assertEquals(BuildInstantiator.Retry.YES, BuildInstantiator.retryOf(new KubernetesClientException("throttled", 429, null)));
+    assertEquals(BuildInstantiator.Retry.YES, BuildInstantiator.retryOf(new KubernetesClientException("unavailable", 503, null)));
+    assertEquals(BuildInstantiator.Retry.YES,
+        BuildInstantiator.retryOf(new KubernetesClientException("no connection", new ConnectException("Connection refused"))));
+  }
+
+  @Test
+  public void testCallsThatMayHaveCreatedABuildAreChecked() throws Exception {
+    assertEquals(BuildInstantiator.Retry.IF_NOT_CREATED,
+        BuildInstantiator.retryOf(new KubernetesClientException("timeout", new SocketTimeoutException("Read timed out"))));
+    assertEquals(BuildInstantiator.Retry.IF_NOT_CREATED, BuildInstantiator.retryOf(new KubernetesClientException("oops", 500, null)));
+    assertEquals(BuildInstantiator.Retry.IF_NOT_CREATED, BuildInstantiator.retryOf(new KubernetesClientException("gateway", 504, null)));
+  }
+
+  @Test
+  public void testOtherFailuresAreNotRetried() throws Exception {
+    assertEquals(BuildInstantiator.Retry.NO, BuildInstantiator.retryOf(new KubernetesClientException("forbidden", 403, null)));
+    assertEquals(BuildInstantiator.Retry.NO, BuildInstantiator.retryOf(new IllegalStateException("bug")));
+    assertFalse(BuildInstantiator.isRetriable(new RuntimeException(new IOException("bug"))));
+    assertTrue(BuildInstantiator.isRetriable(new KubernetesClientException("oops", 500, null)));
+  }
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class BuildPatcherTest {
+  @Test
+  public void testMergePatchLeavesOutNulls() throws Exception {
+    Map<String, String> annotations = new HashMap<String, String>();
+    annotations.put("a", "1");
+    annotations.put("b", null);
+    Map<String, Object> status = new HashMap<String, Object>();
+    status.put("phase", "Running");
+    status.put("completionTimestamp", null);
+
+    String json = new ObjectMapper().writeValueAsString(BuildPatcher.mergePatch(annotations, status));
+    assertEquals("{\"metadata\":{\"annotations\":{\"a\":\"1\"}},\"status\":{\"phase\":\"Running\"}}", json);
+  }
+
+  @Test
+  public void testMergePatchOfStatusOnly() throws Exception {
+    Map<String, Object> status = new HashMap<String, Object>();
+    status.put("phase", "Cancelled");
+
+    String json = new ObjectMapper().writeValueAsString(BuildPatcher.mergePatch(null, status));
+    assertEquals("{\"status\":{\"phase\":\"Cancelled\"}}", json);
+  }
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class BuildRunIndexTest {
+  @After
+  public void tearDown() {
+    BuildRunIndex.clear();
+  }
+
+  @Test
+  public void testAddRemoveForget() throws Exception {
+    BuildRunIndex.add("ns1/ns1-bc1", "uid-1", 1);
+    BuildRunIndex.add("ns1/ns1-bc1", "uid-2", 2);
+    BuildRunIndex.add("ns1/ns1-bc2", "uid-3", 1);
+    assertEquals(3, BuildRunIndex.size());
+
+    BuildRunIndex.remove("ns1/ns1-bc1", "uid-1");
+    assertEquals(2, BuildRunIndex.size());
+    // removing from a job that was never indexed is a no-op
+    BuildRunIndex.remove("ns2/ns2-bc1", "uid-1");
+
+    BuildRunIndex.forget("ns1/ns1-bc1");
+    assertEquals(1, BuildRunIndex.size());
+  }
+}
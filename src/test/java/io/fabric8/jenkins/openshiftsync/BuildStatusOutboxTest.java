@@ -0,0 +1,66 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BuildStatusOutboxTest {
+  @Test
+  public void testNewerUpdateWins() throws Exception {
+    BuildStatusOutbox.Update older = update(BuildPhases.RUNNING, "2018-01-01T00:00:00Z", "old json");
+    BuildStatusOutbox.Update newer = update(BuildPhases.COMPLETE, null, "new json");
+    newer.annotations.put("pending", "[]");
+
+    BuildStatusOutbox.Update merged = older.mergedWith(newer);
+    assertEquals(BuildPhases.COMPLETE, merged.status.get("phase"));
+    // a field the newer update leaves out keeps its pending value
+    assertEquals("2018-01-01T00:00:00Z", merged.status.get("startTimestamp"));
+    assertEquals("new json", merged.annotations.get("status"));
+    assertEquals("[]", merged.annotations.get("pending"));
+    assertTrue(merged.isTerminal());
+    assertFalse(older.isTerminal());
+  }
+
+  @Test
+  public void testTerminalUpdateIsNotUndone() throws Exception {
+    BuildStatusOutbox.Update terminal = update(BuildPhases.COMPLETE, "2018-01-01T00:00:00Z", "final json");
+    terminal.status.put("completionTimestamp", "2018-01-01T00:05:00Z");
+    BuildStatusOutbox.Update running = update(BuildPhases.RUNNING, "2018-01-01T00:00:00Z", "running json");
+    running.status.put("completionTimestamp", null);
+
+    BuildStatusOutbox.Update merged = terminal.mergedWith(running);
+    assertEquals(BuildPhases.COMPLETE, merged.status.get("phase"));
+    assertEquals("2018-01-01T00:05:00Z", merged.status.get("completionTimestamp"));
+    assertEquals("final json", merged.annotations.get("status"));
+    assertTrue(merged.isTerminal());
+  }
+
+  private BuildStatusOutbox.Update update(String phase, String startTime, String json) {
+    Map<String, String> annotations = new HashMap<String, String>();
+    annotations.put("status", json);
+    Map<String, Object> status = new HashMap<String, Object>();
+    status.put("phase", phase);
+    status.put("startTimestamp", startTime);
+    return new BuildStatusOutbox.Update("ns1", "bc1-1", annotations, status, null);
+  }
+}
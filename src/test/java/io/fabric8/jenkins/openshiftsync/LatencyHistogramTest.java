@@ -0,0 +1,48 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LatencyHistogramTest {
+  @Test
+  public void testPercentiles() throws Exception {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getPercentileMillis(0.99));
+    for (int i = 0; i < 98; i++) {
+      histogram.record(3);
+    }
+    histogram.record(400);
+    histogram.record(70000);
+
+    assertEquals(100, histogram.getCount());
+    assertEquals(70000, histogram.getMaxMillis());
+    assertEquals(5, histogram.getPercentileMillis(0.5));
+    assertEquals(500, histogram.getPercentileMillis(0.99));
+    assertEquals(70000, histogram.getPercentileMillis(1.0));
+    assertEquals((98 * 3 + 400 + 70000) / 100, histogram.getMeanMillis());
+  }
+
+  @Test
+  public void testBuckets() throws Exception {
+    assertEquals(0, LatencyHistogram.bucketFor(0));
+    assertEquals(0, LatencyHistogram.bucketFor(1));
+    assertEquals(2, LatencyHistogram.bucketFor(3));
+    assertEquals(LatencyHistogram.BOUNDS.length, LatencyHistogram.bucketFor(Long.MAX_VALUE));
+  }
+}
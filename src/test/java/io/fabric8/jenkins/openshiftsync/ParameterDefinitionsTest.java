@@ -0,0 +1,52 @@
+/**
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import hudson.model.BooleanParameterDefinition;
+import hudson.model.ParameterDefinition;
+import hudson.model.StringParameterDefinition;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ParameterDefinitionsTest {
+  private static final String FROM_ENV = "From OpenShift Build Environment Variable";
+
+  @Test
+  public void testSameParameterDefinitions() throws Exception {
+    ParameterDefinition userParam = new BooleanParameterDefinition("DEBUG", false, "set by a user");
+    List<ParameterDefinition> existing = Arrays.<ParameterDefinition> asList(userParam,
+        new StringParameterDefinition("FOO", "bar", FROM_ENV));
+
+    Map<String, ParameterDefinition> regenerated = new HashMap<String, ParameterDefinition>();
+    regenerated.put("DEBUG", userParam);
+    regenerated.put("FOO", new StringParameterDefinition("FOO", "bar", FROM_ENV));
+    assertTrue(JenkinsUtils.sameParameterDefinitions(existing, regenerated));
+
+    regenerated.put("FOO", new StringParameterDefinition("FOO", "baz", FROM_ENV));
+    assertFalse(JenkinsUtils.sameParameterDefinitions(existing, regenerated));
+
+    regenerated.put("FOO", new StringParameterDefinition("FOO", "bar", FROM_ENV));
+    regenerated.put("NEW", new StringParameterDefinition("NEW", "", FROM_ENV));
+    assertFalse(JenkinsUtils.sameParameterDefinitions(existing, regenerated));
+  }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import io.fabric8.openshift.api.model.Build;
+import io.fabric8.openshift.api.model.BuildBuilder;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+
+import static io.fabric8.jenkins.openshiftsync.Constants.OPENSHIFT_ANNOTATIONS_BUILD_NUMBER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ParkedBuildsTest {
+  @After
+  public void tearDown() {
+    ParkedBuilds.clear();
+  }
+
+  @Test
+  public void testReleaseOnlyThatBuildConfig() throws Exception {
+    assertTrue(ParkedBuilds.park(build("ns1", "bc1", "bc1-2", 2)));
+    assertTrue(ParkedBuilds.park(build("ns1", "bc1", "bc1-1", 1)));
+    assertTrue(ParkedBuilds.park(build("ns1", "bc2", "bc2-1", 1)));
+    // parking the same build again does not count it twice
+    assertTrue(ParkedBuilds.park(build("ns1", "bc2", "bc2-1", 1)));
+    assertEquals(3, ParkedBuilds.getParkedCount());
+    assertEquals(2, ParkedBuilds.getParkedBuildConfigCount());
+
+    List<Build> released = ParkedBuilds.release("ns1", "bc1");
+    assertEquals(2, released.size());
+    assertEquals("bc1-1", released.get(0).getMetadata().getName());
+    assertEquals("bc1-2", released.get(1).getMetadata().getName());
+    assertEquals(1, ParkedBuilds.getParkedCount());
+    assertEquals(Integer.valueOf(1), ParkedBuilds.getParkedCounts().get("ns1/bc2"));
+    assertEquals(0, ParkedBuilds.release("ns1", "bc1").size());
+  }
+
+  @Test
+  public void testRemoveAndEvict() throws Exception {
+    Build build = build("ns1", "bc1", "bc1-1", 1);
+    ParkedBuilds.park(build);
+    assertTrue(ParkedBuilds.isParked(build));
+    ParkedBuilds.remove(build);
+    assertFalse(ParkedBuilds.isParked(build));
+    assertEquals(0, ParkedBuilds.getParkedBuildConfigCount());
+
+    ParkedBuilds.park(build);
+    assertEquals(0, ParkedBuilds.evictOlderThan(System.currentTimeMillis() - 60000));
+    assertEquals(1, ParkedBuilds.evictOlderThan(System.currentTimeMillis() + 1));
+    assertEquals(0, ParkedBuilds.getParkedCount());
+  }
+
+  @Test
+  public void testBuildWithoutBuildConfigIsNotParked() throws Exception {
+    Build build = new BuildBuilder().withNewMetadata().withNamespace("ns1").withName("orphan").endMetadata().build();
+    assertFalse(ParkedBuilds.park(build));
+  }
+
+  private Build build(String namespace, String bcName, String name, int number) {
+    return new BuildBuilder().withNewMetadata().withNamespace(namespace).withName(name)
+        .addToAnnotations(OPENSHIFT_ANNOTATIONS_BUILD_NUMBER, Integer.toString(number)).endMetadata()
+        .withNewStatus().withNewConfig().withName(bcName).endConfig().endStatus().build();
+  }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.client.Watcher.Action;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ResourceCacheTest {
+  @Test
+  public void testReplaceAndEvents() throws Exception {
+    ResourceCache<ConfigMap> cache = new ResourceCache<>();
+    ConfigMap a = configMap("ns1", "a", "uid-a");
+    ConfigMap b = configMap("ns1", "b", "uid-b");
+
+    assertFalse(cache.hasSynced("ns1"));
+    cache.replace("ns1", Arrays.asList(a, b));
+    assertTrue(cache.hasSynced("ns1"));
+    assertEquals(2, cache.list("ns1").size());
+    assertSame(a, cache.get("ns1", "a"));
+    assertSame(b, cache.getByUid("uid-b"));
+
+    ConfigMap a2 = configMap("ns1", "a", "uid-a");
+    cache.onEvent(Action.MODIFIED, a2);
+    assertSame(a2, cache.get("ns1", "a"));
+    assertSame(a2, cache.getByUid("uid-a"));
+
+    cache.onEvent(Action.DELETED, b);
+    assertNull(cache.get("ns1", "b"));
+    assertNull(cache.getByUid("uid-b"));
+
+    // a relist drops whatever is no longer there
+    cache.replace("ns1", Arrays.asList(configMap("ns1", "c", "uid-c")));
+    assertNull(cache.get("ns1", "a"));
+    assertNull(cache.getByUid("uid-a"));
+    assertEquals(1, cache.size());
+
+    cache.invalidate("ns1");
+    assertFalse(cache.hasSynced("ns1"));
+    assertEquals(1, cache.list("ns1").size());
+  }
+
+  @Test
+  public void testRecreatedObjectReplacesUid() throws Exception {
+    ResourceCache<ConfigMap> cache = new ResourceCache<>();
+    cache.onEvent(Action.ADDED, configMap("ns1", "a", "uid-1"));
+    cache.onEvent(Action.ADDED, configMap("ns1", "a", "uid-2"));
+    assertNull(cache.getByUid("uid-1"));
+    assertEquals("uid-2", cache.get("ns1", "a").getMetadata().getUid());
+  }
+
+  @Test
+  public void testReplaceAcrossNamespaces() throws Exception {
+    ResourceCache<ConfigMap> cache = new ResourceCache<>();
+    cache.onEvent(Action.ADDED, configMap("ns2", "stale", "uid-stale"));
+    cache.replace(Arrays.asList("ns1", "ns2"), Arrays.asList(configMap("ns1", "a", "uid-a"), configMap("other", "b", "uid-b")));
+    assertTrue(cache.hasSynced(Arrays.asList("ns1", "ns2")));
+    assertFalse(cache.hasSynced(Arrays.asList("ns1", "other")));
+    assertEquals(1, cache.list(Arrays.asList("ns1", "ns2")).size());
+    assertNull(cache.get("ns2", "stale"));
+    assertNull(cache.getByUid("uid-b"));
+
+    cache.invalidate(Arrays.asList("ns1", "ns2"));
+    assertFalse(cache.hasSynced("ns1"));
+    assertFalse(cache.hasSynced("ns2"));
+  }
+
+  @Test
+  public void testReplacePageByPage() throws Exception {
+    ResourceCache<ConfigMap> cache = new ResourceCache<>();
+    ConfigMap kept = configMap("ns1", "kept", "uid-kept");
+    cache.replace("ns1", Arrays.asList(kept, configMap("ns1", "gone", "uid-gone")));
+
+    cache.beginReplace(Arrays.asList("ns1"));
+    assertFalse(cache.hasSynced("ns1"));
+    ConfigMap kept2 = configMap("ns1", "kept", "uid-kept");
+    cache.addPage(Arrays.asList(kept2));
+    cache.addPage(Arrays.asList(configMap("ns1", "new", "uid-new"), configMap("other", "x", "uid-x")));
+    // nothing is dropped before the last page
+    assertEquals(3, cache.list("ns1").size());
+    cache.endReplace(Arrays.asList("ns1"));
+
+    assertTrue(cache.hasSynced("ns1"));
+    assertSame(kept2, cache.get("ns1", "kept"));
+    assertNull(cache.get("ns1", "gone"));
+    assertNull(cache.getByUid("uid-gone"));
+    assertNull(cache.getByUid("uid-x"));
+    assertEquals(2, cache.size());
+  }
+
+  private ConfigMap configMap(String namespace, String name, String uid) {
+    return new ConfigMapBuilder().withNewMetadata().withNamespace(namespace).withName(name).withUid(uid).endMetadata().build();
+  }
+}
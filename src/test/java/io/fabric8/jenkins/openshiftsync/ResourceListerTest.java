@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ResourceListerTest {
+  @Test
+  public void testParsePage() throws Exception {
+    String json = "{\"kind\":\"ConfigMapList\",\"apiVersion\":\"v1\","
+        + "\"metadata\":{\"selfLink\":\"/api/v1/namespaces/ns1/configmaps\",\"resourceVersion\":\"1234\",\"continue\":\"next-token\"},"
+        + "\"items\":[{\"metadata\":{\"name\":\"a\",\"namespace\":\"ns1\",\"uid\":\"uid-a\",\"labels\":{\"role\":\"jenkins-slave\"}},\"data\":{\"k\":\"v\"}},"
+        + "{\"metadata\":{\"name\":\"b\",\"namespace\":\"ns1\",\"uid\":\"uid-b\"}}]}";
+    ResourceLister.Page<ConfigMap> page = ResourceLister.parsePage(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), ConfigMap.class);
+    assertEquals("1234", page.resourceVersion);
+    assertEquals("next-token", page.continueToken);
+    assertEquals(2, page.items.size());
+    assertEquals("a", page.items.get(0).getMetadata().getName());
+    assertEquals("v", page.items.get(0).getData().get("k"));
+    assertEquals("uid-b", page.items.get(1).getMetadata().getUid());
+  }
+
+  @Test
+  public void testLastPageHasNoContinue() throws Exception {
+    String json = "{\"metadata\":{\"resourceVersion\":\"99\"},\"items\":[]}";
+    ResourceLister.Page<ConfigMap> page = ResourceLister.parsePage(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), ConfigMap.class);
+    assertEquals("99", page.resourceVersion);
+    assertNull(page.continueToken);
+    assertEquals(0, page.items.size());
+  }
+
+  @Test
+  public void testSelector() throws Exception {
+    Map<String, String> terms = new LinkedHashMap<String, String>();
+    terms.put("status", "New");
+    terms.put("openshift.io/build-config.name", "bc");
+    assertEquals("status=New,openshift.io/build-config.name=bc", ResourceLister.selector(terms));
+  }
+}
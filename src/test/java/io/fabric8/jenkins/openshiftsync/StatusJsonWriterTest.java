@@ -0,0 +1,32 @@
+/**
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class StatusJsonWriterTest {
+  @Test
+  public void testAbsolute() throws Exception {
+    String prefix = StatusJsonWriter.urlPrefix("http://localhost:8080/");
+    assertEquals("http://localhost:8080", prefix);
+    assertEquals("http://localhost:8080/job/cheese/12/wfapi/describe", StatusJsonWriter.absolute(prefix, "/job/cheese/12/wfapi/describe"));
+    assertEquals("http://localhost:8080/job/cheese/12/wfapi/describe", StatusJsonWriter.absolute(prefix, "job/cheese/12/wfapi/describe"));
+    assertEquals("https://jenkins.example.com/job/cheese/12/", StatusJsonWriter.absolute(prefix, "https://jenkins.example.com/job/cheese/12/"));
+    assertEquals("/job/cheese/12/", StatusJsonWriter.absolute(StatusJsonWriter.urlPrefix(null), "/job/cheese/12/"));
+  }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TokenBucketTest {
+  @Test
+  public void testBurstThenRate() throws Exception {
+    long start = 0;
+    TokenBucket bucket = new TokenBucket(2, 3, start);
+    assertTrue(bucket.tryAcquire(start));
+    assertTrue(bucket.tryAcquire(start));
+    assertTrue(bucket.tryAcquire(start));
+    assertFalse(bucket.tryAcquire(start));
+    assertFalse(bucket.hasToken(start + TimeUnit.MILLISECONDS.toNanos(400)));
+    assertTrue(bucket.tryAcquire(start + TimeUnit.MILLISECONDS.toNanos(500)));
+    assertFalse(bucket.tryAcquire(start + TimeUnit.MILLISECONDS.toNanos(500)));
+  }
+
+  @Test
+  public void testRefillStopsAtBurst() throws Exception {
+    TokenBucket bucket = new TokenBucket(100, 2, 0);
+    long later = TimeUnit.SECONDS.toNanos(10);
+    assertTrue(bucket.tryAcquire(later));
+    assertTrue(bucket.tryAcquire(later));
+    assertFalse(bucket.tryAcquire(later));
+  }
+
+  @Test
+  public void testNanosUntilToken() throws Exception {
+    TokenBucket bucket = new TokenBucket(10, 1, 0);
+    assertEquals(0, bucket.nanosUntilToken(0));
+    assertTrue(bucket.tryAcquire(0));
+    // rounding aside, the time until the next tenth of a second
+    assertEquals(100.0, bucket.nanosUntilToken(0) / 1e6, 0.001);
+    assertEquals(40.0, bucket.nanosUntilToken(TimeUnit.MILLISECONDS.toNanos(60)) / 1e6, 0.001);
+  }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import io.fabric8.openshift.api.model.Build;
+import io.fabric8.openshift.api.model.BuildBuilder;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TriggerLatencyTest {
+  @Test
+  public void testStagesOfTrigger() throws Exception {
+    // whole seconds, as in creationTimestamp
+    long created = (System.currentTimeMillis() / 1000 - 60) * 1000;
+    Build build = new BuildBuilder().withNewMetadata().withNamespace("latency-ns").withName("bc-1").withUid("uid-1")
+        .withCreationTimestamp(OpenShiftUtils.formatTimestamp(created)).endMetadata().build();
+    BuildCause cause = new BuildCause(build, "bc-uid");
+    assertEquals(created, cause.getCreatedAt());
+    // not handling a watch event, so received now
+    assertTrue(cause.getReceivedAt() >= created + 60000);
+
+    cause.setQueuedAt(cause.getReceivedAt() + 20);
+    cause.setStartedAt(cause.getQueuedAt() + 3000);
+    TriggerLatency.started(cause);
+    cause.setFirstStatusUpdateAt(cause.getStartedAt() + 400);
+    TriggerLatency.statusUpdated(cause);
+
+    TriggerLatency.Stats stats = TriggerLatency.get("latency-ns");
+    assertEquals(1, stats.getStarted());
+    assertEquals(20, stats.getSubmitP99Millis());
+    assertEquals(3000, stats.getQueueP50Millis());
+    assertEquals(400, stats.getStatusUpdateP99Millis());
+    assertEquals(cause.getStartedAt() - created, stats.total.getMaxMillis());
+  }
+
+  @Test
+  public void testUnknownTimestampsAreSkipped() throws Exception {
+    BuildCause cause = new BuildCause("uid-2", "latency-unknown-ns", "bc-2", null, null, "bc-uid");
+    cause.setStartedAt(System.currentTimeMillis());
+    TriggerLatency.started(cause);
+    assertEquals(0, TriggerLatency.get("latency-unknown-ns").getStarted());
+  }
+}
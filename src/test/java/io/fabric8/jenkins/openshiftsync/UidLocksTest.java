@@ -0,0 +1,133 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class UidLocksTest {
+  @Test
+  public void testSameUidSameLock() throws Exception {
+    assertSame(UidLocks.lockFor("a3c1e0b2-0000-11e8-9f0d-000000000001"), UidLocks.lockFor(new String("a3c1e0b2-0000-11e8-9f0d-000000000001")));
+    assertEquals(0, UidLocks.STRIPES & (UidLocks.STRIPES - 1));
+  }
+
+  @Test
+  public void testReentrant() throws Exception {
+    String uid = "reentrant-uid";
+    UidLocks.lock(uid);
+    try {
+      assertTrue(UidLocks.tryLock(uid, 10, TimeUnit.MILLISECONDS));
+      UidLocks.unlock(uid);
+    } finally {
+      UidLocks.unlock(uid);
+    }
+  }
+
+  @Test
+  public void testTimeoutIsCountedAsContention() throws Exception {
+    final String uid = "contended-uid";
+    final AtomicBoolean acquired = new AtomicBoolean(true);
+    UidLocks.lock(uid);
+    try {
+      Thread t = new Thread() {
+        @Override
+        public void run() {
+          acquired.set(UidLocks.tryLock(uid, 10, TimeUnit.MILLISECONDS));
+        }
+      };
+      t.start();
+      t.join();
+    } finally {
+      UidLocks.unlock(uid);
+    }
+    assertFalse(acquired.get());
+    assertEquals(Long.valueOf(1), UidLocks.getContentionCounts().get(uid));
+    UidLocks.forget(uid);
+    assertFalse(UidLocks.getContentionCounts().containsKey(uid));
+  }
+
+  @Test
+  public void testContentionIsChargedToHolder() throws Exception {
+    final String holder = "holder-uid";
+    String other = null;
+    for (int i = 0; other == null; i++) {
+      if (UidLocks.stripeOf("waiter-uid-" + i) == UidLocks.stripeOf(holder)) {
+        other = "waiter-uid-" + i;
+      }
+    }
+    final String waiter = other;
+    UidLocks.lock(holder);
+    try {
+      Thread t = new Thread() {
+        @Override
+        public void run() {
+          UidLocks.tryLock(waiter, 1, TimeUnit.MILLISECONDS);
+        }
+      };
+      t.start();
+      t.join();
+    } finally {
+      UidLocks.unlock(holder);
+    }
+    try {
+      assertEquals(Long.valueOf(1), UidLocks.getContentionCounts().get(holder));
+      assertFalse(UidLocks.getContentionCounts().containsKey(waiter));
+    } finally {
+      UidLocks.forget(holder);
+    }
+  }
+
+  @Test
+  public void testMostContendedFirst() throws Exception {
+    contend("seldom-uid", 1);
+    contend("often-uid", 3);
+    try {
+      Map<String, Long> top = UidLocks.getMostContended(1);
+      assertEquals(1, top.size());
+      assertEquals(Long.valueOf(3), top.get("often-uid"));
+    } finally {
+      UidLocks.forget("seldom-uid");
+      UidLocks.forget("often-uid");
+    }
+  }
+
+  private void contend(final String uid, int times) throws Exception {
+    for (int i = 0; i < times; i++) {
+      UidLocks.lock(uid);
+      try {
+        Thread t = new Thread() {
+          @Override
+          public void run() {
+            UidLocks.tryLock(uid, 1, TimeUnit.MILLISECONDS);
+          }
+        };
+        t.start();
+        t.join();
+      } finally {
+        UidLocks.unlock(uid);
+      }
+    }
+  }
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2018 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.jenkins.openshiftsync;
+
+import io.fabric8.kubernetes.client.Watcher.Action;
+import io.fabric8.openshift.api.model.Build;
+import io.fabric8.openshift.api.model.BuildBuilder;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class WatcherMetricsTest {
+  @Test
+  public void testCountsPerWatcherAndNamespace() throws Exception {
+    long created = OpenShiftUtils.parseTimestamp("2018-03-01T10:00:00Z");
+    Build build = new BuildBuilder().withNewMetadata().withNamespace("metrics-ns").withName("bc-1")
+        .withCreationTimestamp("2018-03-01T10:00:00Z").endMetadata().build();
+    WatcherMetrics.Stats stats = WatcherMetrics.getFor("TestWatcher", build);
+    assertSame(stats, WatcherMetrics.get("TestWatcher", "metrics-ns"));
+
+    stats.received(Action.ADDED, build, created + 2000);
+    stats.received(Action.MODIFIED, build, created + 3000);
+    assertEquals(2, stats.getInFlight());
+    stats.handled(0, TimeUnit.MILLISECONDS.toNanos(40), TimeUnit.MILLISECONDS.toNanos(240));
+
+    assertEquals(1, stats.getAdded());
+    assertEquals(1, stats.getModified());
+    assertEquals(1, stats.getInFlight());
+    assertEquals(2000, stats.getCreationLagP99Millis());
+    assertEquals(40, stats.getQueueLagMaxMillis());
+    assertEquals(200, stats.getHandlerMaxMillis());
+  }
+}